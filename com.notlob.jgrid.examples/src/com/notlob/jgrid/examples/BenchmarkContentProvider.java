@@ -0,0 +1,30 @@
+package com.notlob.jgrid.examples;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The example content provider looks-up the natural index with a list scan, which would swamp the benchmarks'
+ * measurements.
+ *
+ * @author Stef
+ *
+ */
+class BenchmarkContentProvider extends GridContentProvider {
+	private final Map<Person, Integer> naturalIndexes;
+
+	public BenchmarkContentProvider(final List<Person> persons) {
+		super(persons);
+		naturalIndexes = new HashMap<>();
+
+		for (final Person person : persons) {
+			naturalIndexes.put(person, naturalIndexes.size());
+		}
+	}
+
+	@Override
+	public int getNaturalIndex(final Person person) {
+		return naturalIndexes.get(person);
+	}
+}
@@ -0,0 +1,60 @@
+package com.notlob.jgrid.examples;
+
+import com.notlob.jgrid.model.Column;
+import com.notlob.jgrid.model.Row;
+import com.notlob.jgrid.providers.IGridLabelProvider;
+import com.notlob.jgrid.providers.ImageCollector;
+import com.notlob.jgrid.styles.StyleCollector;
+
+/**
+ * A label provider for the benchmarks, which don't render anything.
+ *
+ * @author Stef
+ *
+ */
+class BenchmarkLabelProvider implements IGridLabelProvider<Person> {
+	@Override
+	public String getText(final Column column, final Person element) {
+		return null;
+	}
+
+	@Override
+	public String getToolTip(final Column column, final Person element) {
+		return null;
+	}
+
+	@Override
+	public String getHeaderToolTip(final Column column) {
+		return null;
+	}
+
+	@Override
+	public void getImage(final ImageCollector collector, final Column column, final Person element) {
+	}
+
+	@Override
+	public void getHeaderImage(final ImageCollector collector, final Column column) {
+	}
+
+	@Override
+	public void getCellStyle(final StyleCollector styleCollector, final Column column, final Person element) {
+	}
+
+	@Override
+	public void getHeaderStyle(final StyleCollector styleCollector, final Column column) {
+	}
+
+	@Override
+	public void getAnchorStyle(final StyleCollector styleCollector, final Column column, final Person element) {
+	}
+
+	@Override
+	public int getDefaultRowHeight(final Person element) {
+		return -1;
+	}
+
+	@Override
+	public boolean shouldAlternateBackground(final Row<Person> previousRow, final Row<Person> currentRow) {
+		return !previousRow.isAlternateBackground();
+	}
+}
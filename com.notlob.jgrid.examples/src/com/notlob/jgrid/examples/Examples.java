@@ -294,16 +294,16 @@ public class Examples {
 	}
 	
 	/**
-	 * Set each PersonFilter to the text specified and apply to the grid to highlight matches.
+	 * Set each PersonFilter to the text specified and apply to the grid to highlight matches. Only the PersonFilters are
+	 * re-evaluated.
 	 */
 	private static void applyFilters(final Grid<Person> grid, final String filterText) {
-		for (Filter<Person> filter : grid.getFilters()) {
+		for (Filter<Person> filter : new ArrayList<>(grid.getFilters())) {
 			if (filter instanceof PersonFilter) {
 				((PersonFilter) filter).setFilterText(filterText);
+				grid.applyFilter(filter);
 			}
 		}
-		
-		grid.applyFilters();		
 	}
 	
 	/**
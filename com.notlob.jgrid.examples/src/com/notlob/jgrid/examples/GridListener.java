@@ -5,7 +5,9 @@ import java.util.Collection;
 import org.eclipse.swt.graphics.Point;
 
 import com.notlob.jgrid.listeners.IGridListener;
+import com.notlob.jgrid.model.ChangeSet;
 import com.notlob.jgrid.model.Column;
+import com.notlob.jgrid.model.SelectionChange;
 
 public class GridListener implements IGridListener<Person> {
 
@@ -14,6 +16,11 @@ public class GridListener implements IGridListener<Person> {
 		System.out.println("selectionChanged");
 	}
 
+	@Override
+	public void selectionModified(SelectionChange<Person> change) {
+		System.out.println("selectionModified " + change);
+	}
+
 	@Override
 	public void click(Column column, Person person, Point location, int modifier) {
 		System.out.println("Click");		
@@ -109,4 +116,9 @@ public class GridListener implements IGridListener<Person> {
 	public void filtersChanging() {
 		System.out.println("filtersChanging");
 	}
+
+	@Override
+	public void changesCommitted(ChangeSet<Person> changes) {
+		System.out.println("changesCommitted " + changes);
+	}
 }
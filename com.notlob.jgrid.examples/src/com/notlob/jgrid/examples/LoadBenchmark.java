@@ -0,0 +1,82 @@
+package com.notlob.jgrid.examples;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.notlob.jgrid.model.Column;
+import com.notlob.jgrid.model.GridModel;
+import com.notlob.jgrid.model.SortDirection;
+import com.notlob.jgrid.model.filtering.Filter;
+
+/**
+ * Measures a cold load of 100k and 800k rows (no display is required) - adding the elements in batches of 1,000 (each
+ * row is inserted on it's own), adding them in one batch with addElements (the rows are merged in) and setElements.
+ *
+ * The grid is sorted by surname and has a filter which hides about a tenth of the rows. The resulting rows are checked
+ * to be identical.
+ *
+ * To run this you will have to export the com.notlob.jgrid project as a jar and add it, and SWT, to the classpath.
+ *
+ * @author Stef
+ *
+ */
+public class LoadBenchmark {
+
+	private final static int BATCH_SIZE = 1000;
+
+	public static void main(String[] args) {
+		for (final int rowCount : new int[] { 100000, 800000 }) {
+			final List<Person> persons = SortBenchmark.createElements(rowCount);
+
+			long start = System.nanoTime();
+			final GridModel<Person> batchModel = createModel(persons);
+			for (int index=0; index<rowCount; index+=BATCH_SIZE) {
+				batchModel.addElements(persons.subList(index, Math.min(rowCount, index + BATCH_SIZE)));
+			}
+			final long batchMs = (System.nanoTime() - start) / 1000000;
+
+			start = System.nanoTime();
+			final GridModel<Person> addModel = createModel(persons);
+			addModel.addElements(persons);
+			final long addMs = (System.nanoTime() - start) / 1000000;
+
+			start = System.nanoTime();
+			final GridModel<Person> setModel = createModel(persons);
+			setModel.setElements(persons);
+			final long setMs = (System.nanoTime() - start) / 1000000;
+
+			final boolean identical = batchModel.getElements().equals(setModel.getElements()) && addModel.getElements().equals(setModel.getElements()) && (addModel.getHiddenRows().size() == setModel.getHiddenRows().size());
+
+			System.out.println(String.format("%,9d rows - addElements x1,000 %,6d ms (%,10d rows/sec) addElements %,6d ms (%,10d rows/sec) setElements %,6d ms (%,10d rows/sec) %s",
+					rowCount, batchMs, (rowCount * 1000L) / Math.max(1, batchMs), addMs, (rowCount * 1000L) / Math.max(1, addMs), setMs, (rowCount * 1000L) / Math.max(1, setMs), identical ? "identical" : "DIFFERENT ROWS"));
+		}
+	}
+
+	private static GridModel<Person> createModel(final List<Person> persons) {
+		final GridModel<Person> gridModel = new GridModel<>(null, null, null);
+		gridModel.setLabelProvider(new BenchmarkLabelProvider());
+		gridModel.setContentProvider(new BenchmarkContentProvider(persons));
+
+		final Column surnameColumn = new Column(GridContentProvider.COLUMN_ID__SURNAME);
+		surnameColumn.setSortDirection(SortDirection.ASC);
+		gridModel.getSortModel().sort(surnameColumn, false, false, false);
+		gridModel.getFilterModel().addFilters(Collections.singletonList((Filter<Person>) new AgeFilter()));
+
+		return gridModel;
+	}
+
+	/**
+	 * Hides anyone in their nineties.
+	 */
+	private static class AgeFilter extends Filter<Person> {
+		@Override
+		public boolean matches(final Person person) {
+			return person.getAge() < 90;
+		}
+
+		@Override
+		public String toReadableString(final boolean includeStyleTokens) {
+			return "Age < 90";
+		}
+	}
+}
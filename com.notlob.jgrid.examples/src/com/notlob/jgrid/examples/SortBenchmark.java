@@ -0,0 +1,118 @@
+package com.notlob.jgrid.examples;
+
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import com.notlob.jgrid.model.Column;
+import com.notlob.jgrid.model.DefaultColumnComparator;
+import com.notlob.jgrid.model.GridModel;
+import com.notlob.jgrid.model.SortDirection;
+
+/**
+ * Measures sort throughput of the grid's model (no display is required) at 100k and 1M rows.
+ *
+ * Each column is sorted with a comparator which behaves like the original Column comparator (every value is compared as
+ * a String with a new Collator) and then with the DefaultColumnComparator. Each sort is then repeated in parallel and
+ * checked against the sequential order.
+ *
+ * To run this you will have to export the com.notlob.jgrid project as a jar and add it, and SWT, to the classpath.
+ *
+ * @author Stef
+ *
+ */
+public class SortBenchmark {
+
+	private final static String[] NAMES = { "Abraham", "Beatrice", "Cornelius", "Dorothy", "Ebenezer", "Florence", "Gideon", "Harriet", "Ignatius", "Josephine" };
+
+	public static void main(String[] args) {
+		for (final int rowCount : new int[] { 100000, 1000000 }) {
+			benchmark(rowCount);
+		}
+	}
+
+	private static void benchmark(final int rowCount) {
+		final List<Person> persons = createElements(rowCount);
+		final GridModel<Person> gridModel = new GridModel<>(null, null, null);
+		gridModel.setLabelProvider(new BenchmarkLabelProvider());
+		gridModel.setContentProvider(new BenchmarkContentProvider(persons));
+		gridModel.addElements(persons);
+
+		final Column surnameColumn = new Column(GridContentProvider.COLUMN_ID__SURNAME);
+		final Column ageColumn = new Column(GridContentProvider.COLUMN_ID__AGE);
+
+		for (final Column column : new Column[] { surnameColumn, ageColumn }) {
+			sort(gridModel, column, new LegacyComparator(), "String/Collator comparator");
+			sort(gridModel, column, new DefaultColumnComparator(), "DefaultColumnComparator");
+		}
+	}
+
+	private static void sort(final GridModel<Person> gridModel, final Column column, final Comparator<Object> comparator, final String description) {
+		column.setComparator(comparator);
+		column.setSortDirection(SortDirection.ASC);
+
+		//
+		// The first sort includes extracting the sort keys, the second re-uses them.
+		//
+		long start = System.nanoTime();
+		gridModel.getSortModel().sort(column, false, false, false);
+		final long firstSortMs = (System.nanoTime() - start) / 1000000;
+
+		start = System.nanoTime();
+		gridModel.getSortModel().sort(column, true, false, false);
+		final long reSortMs = (System.nanoTime() - start) / 1000000;
+
+		//
+		// Repeat the same sort in parallel.
+		//
+		final List<Person> sequentialOrder = gridModel.getElements();
+		gridModel.getSortModel().setParallelSortThreshold(1);
+		start = System.nanoTime();
+		gridModel.getSortModel().sort(column, false, false, false);
+		final long parallelSortMs = (System.nanoTime() - start) / 1000000;
+		gridModel.getSortModel().setParallelSortThreshold(-1);
+		final boolean identical = sequentialOrder.equals(gridModel.getElements());
+
+		final int rowCount = gridModel.getRows().size();
+		System.out.println(String.format("%,9d rows - %-8s %-26s first sort %,6d ms (%,10d rows/sec) re-sort %,6d ms (%,10d rows/sec) parallel re-sort %,6d ms (%,10d rows/sec) %s", 
+				rowCount, column.getColumnId(), description, firstSortMs, (rowCount * 1000L) / Math.max(1, firstSortMs), reSortMs, (rowCount * 1000L) / Math.max(1, reSortMs),
+				parallelSortMs, (rowCount * 1000L) / Math.max(1, parallelSortMs), identical ? "identical" : "DIFFERENT ORDER"));
+	}
+
+	static List<Person> createElements(final int rowCount) {
+		final Random random = new Random(rowCount);
+		final List<Person> persons = new ArrayList<>(rowCount);
+
+		for (int index=0; index<rowCount; index++) {
+			final String firstname = NAMES[random.nextInt(NAMES.length)];
+			final String lastname = NAMES[random.nextInt(NAMES.length)] + "son-" + random.nextInt(rowCount);
+			persons.add(new Person(String.valueOf(index), firstname, lastname, random.nextInt(100)));
+		}
+
+		return persons;
+	}
+
+	/**
+	 * Compares values the way the original Column comparator did.
+	 */
+	private static class LegacyComparator implements Comparator<Object> {
+		@Override
+		public int compare(final Object o1, final Object o2) {
+			if ((o1 == null) && (o2 == null)) {
+				return 0;
+			}
+
+			if (o1 == null) {
+				return -1;
+			}
+
+			if (o2 == null) {
+				return 1;
+			}
+
+			return Collator.getInstance().compare(String.valueOf(o1), String.valueOf(o2));
+		}
+	}
+}
@@ -19,6 +19,7 @@ import org.eclipse.swt.graphics.Point;
 import org.eclipse.swt.graphics.Rectangle;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Event;
 import org.eclipse.swt.widgets.Listener;
 import org.eclipse.swt.widgets.ScrollBar;
@@ -27,15 +28,23 @@ import org.eclipse.swt.widgets.ToolTip;
 import com.notlob.jgrid.input.GridKeyboardHandler;
 import com.notlob.jgrid.input.GridMouseHandler;
 import com.notlob.jgrid.listeners.IGridListener;
+import com.notlob.jgrid.model.AggregateType;
+import com.notlob.jgrid.model.ChangeSet;
 import com.notlob.jgrid.model.Column;
 import com.notlob.jgrid.model.GridModel;
+import com.notlob.jgrid.model.IngestQueue;
 import com.notlob.jgrid.model.Row;
 import com.notlob.jgrid.model.RowCountScope;
+import com.notlob.jgrid.model.SelectionChange;
 import com.notlob.jgrid.model.Viewport;
 import com.notlob.jgrid.model.filtering.Filter;
+import com.notlob.jgrid.model.filtering.FilterStatistics;
+import com.notlob.jgrid.model.filtering.TextSearchFilter;
+import com.notlob.jgrid.model.filtering.TextSearchFilter.SearchType;
 import com.notlob.jgrid.providers.IGridContentProvider;
 import com.notlob.jgrid.providers.IGridLabelProvider;
 import com.notlob.jgrid.providers.IGridToolTipProvider;
+import com.notlob.jgrid.providers.IGroupElementProvider;
 import com.notlob.jgrid.providers.IRowProvider;
 import com.notlob.jgrid.renderer.GridRenderer;
 import com.notlob.jgrid.renderer.animation.RowAnimation;
@@ -107,6 +116,12 @@ public class Grid<T> extends Composite {
 	protected RowAnimation<T> newRowAnimiation = null;
 	protected RowAnimation<T> updatedRowAnimiation = null;
 	
+	// Changes submitted from any thread, applied in batches on the display thread - at most once every ingestInterval ms.
+	protected final IngestQueue<T> ingestQueue;
+	protected final Display display;
+	protected int ingestInterval = 16;
+	private long lastIngestTime = 0;
+	
 	public Grid(final Composite parent) {
 		super(parent, SWT.V_SCROLL | SWT.H_SCROLL | SWT.DOUBLE_BUFFERED /*| SWT.NO_BACKGROUND | SWT.NO_REDRAW_RESIZE*/);
 		resourceManager = new ResourceManager(parent.getDisplay());
@@ -122,6 +137,8 @@ public class Grid<T> extends Composite {
 		scrollListener = new ScrollListener();
 		focusListener = new GridFocusListener();
 		listeners = new ArrayList<>();
+		display = parent.getDisplay();
+		ingestQueue = new IngestQueue<T>(this::scheduleIngest);
 		toolTip = new ToolTip(parent.getShell(), SWT.NONE);
 		toolTip.setAutoHide(false);
 		keyboardHandler = createKeyboardHandler(gc);
@@ -152,6 +169,7 @@ public class Grid<T> extends Composite {
 		getVerticalBar().removeSelectionListener(scrollListener);
 		getHorizontalBar().removeSelectionListener(scrollListener);
 		gridModel.removeListener(modelListener);
+		gridModel.setBackgroundSortAndFilter(false);
 		gridRenderer.dispose();
 
 		// Dispose of UI handles.
@@ -421,6 +439,70 @@ public class Grid<T> extends Composite {
 		return gridModel.getGroupByColumns();
 	}
 	
+	/**
+	 * If set, the grid groups the elements by the group-by columns itself - creating a parent element for each group with
+	 * the provider. The groups are kept up-to-date as elements are added, updated and removed. If null (the default) the
+	 * content provider's groups are used.
+	 */
+	public void setGroupElementProvider(final IGroupElementProvider<T> groupElementProvider) {
+		checkWidget();
+		gridModel.setGroupElementProvider(groupElementProvider);
+	}
+	
+	public IGroupElementProvider<T> getGroupElementProvider() {
+		checkWidget();
+		return gridModel.getGroupElementProvider();
+	}
+	
+	/**
+	 * Show the aggregate of each group's children in the column of the group's parent row - or stop aggregating the 
+	 * column if the type is null. The aggregates are kept up-to-date as the children change.
+	 */
+	public void setAggregateType(final Column column, final AggregateType type) {
+		checkWidget();
+		gridModel.setAggregateType(column, type);
+	}
+	
+	public AggregateType getAggregateType(final Column column) {
+		checkWidget();
+		return gridModel.getAggregateModel().getAggregateType(column);
+	}
+	
+	/**
+	 * The aggregate of the group's children in the aggregated column.
+	 */
+	public Object getAggregateValue(final Column column, final T groupElement) {
+		checkWidget();
+		return gridModel.getAggregateModel().getValue(column, groupElement);
+	}
+	
+	/**
+	 * Show the aggregate of the visible rows in the column's cell of the footer row - or stop if the type is null. The 
+	 * footer row is shown while any column has a footer aggregate, and is kept up-to-date as rows are filtered and updated.
+	 */
+	public void setFooterAggregateType(final Column column, final AggregateType type) {
+		checkWidget();
+		gridModel.setFooterAggregateType(column, type);
+	}
+	
+	public AggregateType getFooterAggregateType(final Column column) {
+		checkWidget();
+		return gridModel.getFooterModel().getAggregateType(column);
+	}
+	
+	/**
+	 * The aggregate of the visible rows shown in the column's footer cell.
+	 */
+	public Object getFooterValue(final Column column) {
+		checkWidget();
+		return gridModel.getFooterModel().getValue(column);
+	}
+	
+	public Row<T> getFooterRow() {
+		checkWidget();
+		return gridModel.getFooterRow();
+	}
+	
 	public Column getGroupColumn(final int columnIndex) {
 		checkWidget();
 		return gridModel.getGroupByColumns().get(columnIndex);
@@ -448,6 +530,18 @@ public class Grid<T> extends Composite {
 		animateIfRequired(rowsAdded, newRowAnimiation);
 	}
 
+	/**
+	 * Replace all of the elements in the grid. This is much quicker than clearElements then addElements for large 
+	 * collections, as the rows are created and filtered in parallel then sorted once.
+	 * 
+	 * The row provider and label provider's getDefaultRowHeight must be thread-safe. Only filters which declare themselves
+	 * thread-safe are evaluated in parallel.
+	 */
+	public void setElements(final Collection<T> elements) {
+		checkWidget();
+		gridModel.setElements(elements);
+	}
+
 	public void removeElements(final Collection<T> elements) {
 		checkWidget();
 		gridModel.removeElements(elements);
@@ -463,6 +557,118 @@ public class Grid<T> extends Composite {
 		}
 	}
 	
+	/**
+	 * Queue elements to be added. This can be called from any thread - the elements are added on the display thread in 
+	 * the next batch (see submitUpdates).
+	 */
+	public void submitAdds(final Collection<T> elements) {
+		ingestQueue.submitAdds(elements);
+	}
+	
+	/**
+	 * Queue elements to be updated. This can be called from any thread.
+	 * 
+	 * Repeated updates to an element are conflated and the queue is drained on the display thread in a single batch, at 
+	 * most once every ingest interval. Each batch causes one re-index and repaint.
+	 */
+	public void submitUpdates(final Collection<T> elements) {
+		ingestQueue.submitUpdates(elements);
+	}
+	
+	/**
+	 * Queue elements to be removed. This can be called from any thread (see submitUpdates).
+	 */
+	public void submitRemoves(final Collection<T> elements) {
+		ingestQueue.submitRemoves(elements);
+	}
+	
+	/**
+	 * The number of elements with changes waiting to be applied. This can be called from any thread.
+	 */
+	public int getIngestQueueDepth() {
+		return ingestQueue.getDepth();
+	}
+	
+	/**
+	 * The number of submitted changes which were merged into a change already queued for the same element. This can be 
+	 * called from any thread.
+	 */
+	public long getIngestConflationCount() {
+		return ingestQueue.getConflatedCount();
+	}
+	
+	public long getIngestSubmittedCount() {
+		return ingestQueue.getSubmittedCount();
+	}
+	
+	public long getIngestBatchCount() {
+		return ingestQueue.getDrainCount();
+	}
+	
+	public int getIngestInterval() {
+		checkWidget();
+		return ingestInterval;
+	}
+	
+	/**
+	 * The minimum number of milliseconds between applying batches of submitted changes.
+	 */
+	public void setIngestInterval(final int ingestInterval) {
+		checkWidget();
+		this.ingestInterval = ingestInterval;
+	}
+	
+	/**
+	 * Called on the submitting thread when the ingest queue has something in it.
+	 */
+	private void scheduleIngest() {
+		if (!display.isDisposed()) {
+			display.asyncExec(new Runnable() {
+				@Override
+				public void run() {
+					if (isDisposed()) {
+						return;
+					}
+					
+					final int wait = (int) (lastIngestTime + ingestInterval - System.currentTimeMillis());
+					
+					if (wait > 0) {
+						display.timerExec(wait, new Runnable() {
+							@Override
+							public void run() {
+								ingest();
+							}
+						});
+						
+					} else {
+						ingest();
+					}
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Apply everything in the ingest queue in one batch. The rows added and updated are animated the same as they are by
+	 * addElements and updateElements.
+	 */
+	private void ingest() {
+		if (isDisposed()) {
+			return;
+		}
+		
+		lastIngestTime = System.currentTimeMillis();
+		final IngestQueue.Batch<T> batch = ingestQueue.drain();
+		
+		if (!batch.isEmpty()) {
+			final Collection<Row<T>> rowsAdded = new ArrayList<>();
+			final Collection<Row<T>> rowsUpdated = new ArrayList<>();
+			gridModel.applyChanges(batch.getRemoves(), batch.getAdds(), batch.getUpdates(), rowsAdded, rowsUpdated);
+			animateIfRequired(rowsAdded, newRowAnimiation);
+			animateIfRequired(rowsUpdated, updatedRowAnimiation);
+		}
+	}
+	
 	private void animateIfRequired(final Collection<Row<T>> rows, final RowAnimation<T> animation) {
 		boolean animationRequired = false;
 		
@@ -598,11 +804,61 @@ public class Grid<T> extends Composite {
 		gridModel.getFilterModel().applyFilters();
 		gridModel.fireFiltersChangedEvent();
 	}
+	
+	/**
+	 * Re-apply a filter whose criteria have changed. Unlike applyFilters, the other filters aren't re-evaluated.
+	 */
+	public void applyFilter(final Filter<T> filter) {
+		checkWidget();
+		gridModel.fireFiltersChangingEvent();
+		gridModel.getFilterModel().applyFilter(filter);
+		gridModel.fireFiltersChangedEvent();
+	}
 
 	public Collection<Filter<T>> getFilters() {
 		checkWidget();
 		return gridModel.getFilterModel().getFilters();
 	}
+	
+	/**
+	 * Index the text of the columns, so TextSearchFilters can search them without testing every row. The index is kept
+	 * up-to-date as elements are added, updated and removed.
+	 */
+	public void indexColumns(final Collection<Column> columns) {
+		checkWidget();
+		
+		for (final Column column : columns) {
+			gridModel.getTextIndex().addColumn(column);
+		}
+	}
+	
+	/**
+	 * Stop indexing the columns. TextSearchFilters still searching them match nothing in those columns.
+	 */
+	public void unindexColumns(final Collection<Column> columns) {
+		checkWidget();
+		
+		for (final Column column : columns) {
+			gridModel.getTextIndex().removeColumn(column);
+		}
+	}
+	
+	/**
+	 * Create a filter which highlights (and, if isHideNoneHighlightedRows, shows only) the rows whose text in any of the 
+	 * columns contains or starts with the search text. Any of the columns not already indexed are indexed now.
+	 */
+	public TextSearchFilter<T> createTextSearchFilter(final Collection<Column> columns, final String searchText, final SearchType searchType) {
+		indexColumns(columns);
+		return new TextSearchFilter<T>(gridModel.getTextIndex(), columns, searchText, searchType);
+	}
+	
+	/**
+	 * How long the filter has taken to evaluate and how many rows it's hidden (null if it isn't on the grid).
+	 */
+	public FilterStatistics getFilterStatistics(final Filter<T> filter) {
+		checkWidget();
+		return gridModel.getFilterModel().getStatistics(filter);
+	}
 
 	public void addFilters(final Collection<Filter<T>> filters) {
 		checkWidget();
@@ -648,6 +904,71 @@ public class Grid<T> extends Composite {
 		checkWidget();
 		gridModel.getSortModel().setRowComparator(rowComparator);
 	}
+	
+	/**
+	 * Sort in parallel when there are at least this many visible rows (-1, the default, never sorts in parallel).
+	 * 
+	 * Custom row and column comparators must be thread-safe if this is enabled.
+	 */
+	public void setParallelSortThreshold(final int parallelSortThreshold) {
+		checkWidget();
+		gridModel.getSortModel().setParallelSortThreshold(parallelSortThreshold);
+	}
+	
+	public int getParallelSortThreshold() {
+		checkWidget();
+		return gridModel.getSortModel().getParallelSortThreshold();
+	}
+	
+	/**
+	 * Match rows against the filters in parallel when there are at least this many to match (-1, the default, never
+	 * matches in parallel). Only filters declaring themselves thread-safe are evaluated in parallel and rows are only
+	 * matched in parallel if the content provider is declared thread-safe (see setContentProviderThreadSafe).
+	 */
+	public void setParallelFilterThreshold(final int parallelFilterThreshold) {
+		checkWidget();
+		gridModel.getFilterModel().setParallelFilterThreshold(parallelFilterThreshold);
+	}
+	
+	public int getParallelFilterThreshold() {
+		checkWidget();
+		return gridModel.getFilterModel().getParallelFilterThreshold();
+	}
+	
+	/**
+	 * Declare that the content provider's getParent and isCollapsed can be called from any thread. Rows are only filtered
+	 * in parallel or in the background (see setParallelFilterThreshold and setBackgroundSortAndFilter) if they can - as
+	 * the collapsed group filter calls them. False by default.
+	 */
+	public void setContentProviderThreadSafe(final boolean contentProviderThreadSafe) {
+		checkWidget();
+		gridModel.getFilterModel().setContentProviderThreadSafe(contentProviderThreadSafe);
+	}
+	
+	public boolean isContentProviderThreadSafe() {
+		checkWidget();
+		return gridModel.getFilterModel().isContentProviderThreadSafe();
+	}
+
+	/**
+	 * Sort and filter on a background thread. The grid keeps painting the current rows until the new order (or set of
+	 * visible rows) is swapped in - with a single repaint. A sort or filter which is superseded before it completes is
+	 * cancelled.
+	 *
+	 * The content provider is still only called on the display thread when sorting. Filters are only run in the background
+	 * if they're all thread-safe (see Filter.isThreadSafe and setContentProviderThreadSafe) and the grid isn't grouping by
+	 * columns - otherwise they're applied on the display thread. Custom row comparators are always sorted on the display
+	 * thread.
+	 */
+	public void setBackgroundSortAndFilter(final boolean backgroundSortAndFilter) {
+		checkWidget();
+		gridModel.setBackgroundSortAndFilter(backgroundSortAndFilter);
+	}
+
+	public boolean isBackgroundSortAndFilter() {
+		checkWidget();
+		return gridModel.isBackgroundSortAndFilter();
+	}
 
 	/**
 	 * Don't mess with this.
@@ -708,44 +1029,44 @@ public class Grid<T> extends Composite {
 		checkWidget();
 		
 		for (T element : elements) {
-			contentProvider.setCollapsed(element, true);
+			gridModel.getContentProvider().setCollapsed(element, true);
 		}
 		
-		applyFilters();
+		applyFilter(gridModel.getFilterModel().getCollapsedGroupFilter());
 	}
 	
 	public void expandGroups(final Collection<T> elements) {
 		checkWidget();
 		
 		for (T element : elements) {
-			contentProvider.setCollapsed(element, false);
+			gridModel.getContentProvider().setCollapsed(element, false);
 		}
 		
-		applyFilters();
+		applyFilter(gridModel.getFilterModel().getCollapsedGroupFilter());
 	}
 	
 	public void expandAllGroups() {
 		checkWidget();
 		
 		for (Row<T> row : gridModel.getRows()) {
-			if (gridModel.isParentElement(row.getElement())) {
-				contentProvider.setCollapsed(row.getElement(), false);
+			if (gridModel.isParentRow(row)) {
+				gridModel.getContentProvider().setCollapsed(row.getElement(), false);
 			}
 		}
 		
-		applyFilters();
+		applyFilter(gridModel.getFilterModel().getCollapsedGroupFilter());
 	}
 	
 	public void collapseAllGroups() {
 		checkWidget();
 		
 		for (Row<T> row : gridModel.getRows()) {
-			if (gridModel.isParentElement(row.getElement())) {
-				contentProvider.setCollapsed(row.getElement(), true);
+			if (gridModel.isParentRow(row)) {
+				gridModel.getContentProvider().setCollapsed(row.getElement(), true);
 			}
 		}
 		
-		applyFilters();
+		applyFilter(gridModel.getFilterModel().getCollapsedGroupFilter());
 	}
 	
 	public Column getTrackedColumn() {
@@ -1035,9 +1356,7 @@ public class Grid<T> extends Composite {
 				computedArea.x += column.getWidth();
 			}
 
-			for (final Row<T> row : gridModel.getRows()) {
-				computedArea.y += getRowHeight(row);
-			}
+			computedArea.y = gridModel.getRows().getTotalHeight();
 		}
 
 		return computedArea;
@@ -1239,11 +1558,19 @@ public class Grid<T> extends Composite {
 		}
 
 		@Override
-		public void selectionChanged() {
+		public void selectionChanged(final SelectionChange<T> change) {
 			redraw();
 
 			for (final IGridListener<T> listener : listeners) {
 				listener.selectionChanged(gridModel.getSelectionModel().getSelectedElements());
+				listener.selectionModified(change);
+			}
+		}
+		
+		@Override
+		public void changesCommitted(final ChangeSet<T> changes) {
+			for (final IGridListener<T> listener : listeners) {
+				listener.changesCommitted(changes);
 			}
 		}
 		
@@ -357,7 +357,7 @@ public class GridMouseHandler<T> extends MouseAdapter implements MouseMoveListen
 			final Rectangle bounds = grid.getGridRenderer().getExpandImageBounds(gc, row);
 			
 			if (bounds.contains(mouseX,  mouseY)) {							
-				if (grid.getContentProvider().isCollapsed(row.getElement())) {
+				if (gridModel.getContentProvider().isCollapsed(row.getElement())) {
 					grid.expandGroups(Collections.singletonList(row.getElement()));
 					
 				} else {
@@ -384,7 +384,7 @@ public class GridMouseHandler<T> extends MouseAdapter implements MouseMoveListen
 			// Update the anchor column - before triggering selection changed events.
 			//
 			if (!shift) {
-				if (isRenderGroupInline() && gridModel.isParentElement(row.getElement())) {
+				if (isRenderGroupInline() && gridModel.isParentRow(row)) {
 					if (groupColumn != null) {
 						gridModel.getSelectionModel().setAnchorColumn(groupColumn);
 
@@ -633,7 +633,7 @@ public class GridMouseHandler<T> extends MouseAdapter implements MouseMoveListen
 			//
 			// If this is a group row.
 			//
-			if (isRenderGroupInline() && gridModel.isParentElement(newRow.getElement())) {
+			if (isRenderGroupInline() && gridModel.isParentRow(newRow)) {
 				//
 				// If the mouse is over a group field header - track it.
 				//
@@ -4,13 +4,19 @@ import java.util.Collection;
 
 import org.eclipse.swt.graphics.Point;
 
+import com.notlob.jgrid.model.ChangeSet;
 import com.notlob.jgrid.model.Column;
+import com.notlob.jgrid.model.SelectionChange;
 
 public class GridAdapter<T> implements IGridListener<T> {
 
 	@Override
 	public void selectionChanged(final Collection<T> selectedElements) {
 	}
+	
+	@Override
+	public void selectionModified(final SelectionChange<T> change) {
+	}
 
 	@Override
 	public void click(final Column column, final T element, final Point location, final int modifier) {
@@ -87,4 +93,8 @@ public class GridAdapter<T> implements IGridListener<T> {
 	@Override
 	public void cellRevealed(final Column column, final T element) {	
 	}
+	
+	@Override
+	public void changesCommitted(final ChangeSet<T> changes) {
+	}
 }
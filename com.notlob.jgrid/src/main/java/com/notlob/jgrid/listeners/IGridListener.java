@@ -4,11 +4,19 @@ import java.util.Collection;
 
 import org.eclipse.swt.graphics.Point;
 
+import com.notlob.jgrid.model.ChangeSet;
 import com.notlob.jgrid.model.Column;
+import com.notlob.jgrid.model.SelectionChange;
 
 public interface IGridListener<T> {
 
 	void selectionChanged(final Collection<T> selectedElements);
+	
+	/**
+	 * What was selected and unselected - fired alongside selectionChanged. Does nothing unless overridden.
+	 */
+	default void selectionModified(final SelectionChange<T> change) {
+	}
 
 	void click(final Column column, final T element, final Point location, final int modifier);
 
@@ -48,4 +56,12 @@ public interface IGridListener<T> {
 	
 	void cellRevealed(final Column column, T element);
 	
+	/**
+	 * The net element and selection changes - fired once for each addElements, updateElements, removeElements, 
+	 * setElements or clearElements call, selection change, or once for everything between enableEvents(false) and 
+	 * enableEvents(true). Does nothing unless overridden.
+	 */
+	default void changesCommitted(final ChangeSet<T> changes) {
+	}
+	
 }
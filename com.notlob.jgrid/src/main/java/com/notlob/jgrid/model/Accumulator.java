@@ -0,0 +1,217 @@
+package com.notlob.jgrid.model;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * The running aggregate of a set of values, which are added and removed one at a time.
+ *
+ * Counts, sums and averages are O(1) per change. Minimums and maximums keep the values in a heap - a value which isn't at
+ * the top of the heap is only removed once it reaches the top (or when the heap is compacted), so changes are O(log n).
+ *
+ * Whole-number sums are kept as longs so they don't pick up a fraction. Other sums are compensated (Kahan-Babuska) so the
+ * rounding error doesn't build up as values come and go, and start again from zero whenever there are none left.
+ *
+ * @author Stef
+ */
+class Accumulator {
+
+	// The heap is rebuilt without the removed values once they out-number the live values (by this much).
+	private final static int COMPACT_THRESHOLD = 16;
+
+	private final AggregateType type;
+
+	// The number of (non-null) values.
+	private int count = 0;
+
+	// The number of values which were Numbers - the sum of the whole numbers and of the others (and how many there were).
+	private int numberCount = 0;
+	private long longSum = 0;
+	private double doubleSum = 0;
+	private double doubleCompensation = 0;
+	private int doubleCount = 0;
+
+	// The values (with the minimum or maximum at the top) and the values removed from the heap which are still in it.
+	private final PriorityQueue<Object> heap;
+	private final Map<Object, Integer> removedValues;
+
+	@SuppressWarnings("unchecked")
+	Accumulator(final AggregateType type, final Comparator<?> comparator) {
+		this.type = type;
+
+		switch (type) {
+			case MIN:
+				heap = new PriorityQueue<>((Comparator<Object>) comparator);
+				removedValues = new HashMap<>();
+				break;
+
+			case MAX:
+				heap = new PriorityQueue<>(Collections.reverseOrder((Comparator<Object>) comparator));
+				removedValues = new HashMap<>();
+				break;
+
+			default:
+				heap = null;
+				removedValues = null;
+				break;
+		}
+	}
+
+	void add(final Object value) {
+		if (value == null) {
+			return;
+		}
+
+		count++;
+
+		if (heap != null) {
+			//
+			// Adding a value which is waiting to be removed just cancels the removal.
+			//
+			if (!cancelRemoval(value)) {
+				heap.add(value);
+			}
+
+		} else if (isWholeNumber(value)) {
+			longSum += ((Number) value).longValue();
+			numberCount++;
+
+		} else if (value instanceof Number) {
+			addDouble(((Number) value).doubleValue());
+			doubleCount++;
+			numberCount++;
+		}
+	}
+
+	void remove(final Object value) {
+		if (value == null) {
+			return;
+		}
+
+		count--;
+
+		if (heap != null) {
+			if (value.equals(heap.peek())) {
+				heap.poll();
+				pruneHeap();
+
+			} else {
+				removedValues.merge(value, 1, Integer::sum);
+
+				if ((heap.size() - count) > (count + COMPACT_THRESHOLD)) {
+					compactHeap();
+				}
+			}
+
+		} else if (isWholeNumber(value)) {
+			longSum -= ((Number) value).longValue();
+			numberCount--;
+
+		} else if (value instanceof Number) {
+			doubleCount--;
+			numberCount--;
+
+			if (doubleCount == 0) {
+				doubleSum = 0;
+				doubleCompensation = 0;
+
+			} else {
+				addDouble(-((Number) value).doubleValue());
+			}
+		}
+	}
+
+	/**
+	 * Add to the double sum, keeping the low-order bits lost to rounding in the compensation.
+	 */
+	private void addDouble(final double value) {
+		final double sum = doubleSum + value;
+
+		if (Math.abs(doubleSum) >= Math.abs(value)) {
+			doubleCompensation += (doubleSum - sum) + value;
+
+		} else {
+			doubleCompensation += (value - sum) + doubleSum;
+		}
+
+		doubleSum = sum;
+	}
+
+	/**
+	 * Take any removed values off the top of the heap.
+	 */
+	private void pruneHeap() {
+		while (!heap.isEmpty() && cancelRemoval(heap.peek())) {
+			heap.poll();
+		}
+	}
+
+	/**
+	 * Rebuild the heap from it's live values.
+	 */
+	private void compactHeap() {
+		final Object[] values = heap.toArray();
+		heap.clear();
+
+		for (final Object value : values) {
+			if (!cancelRemoval(value)) {
+				heap.add(value);
+			}
+		}
+	}
+
+	/**
+	 * If the value is waiting to be removed from the heap, count one occurrence of it as removed and return true.
+	 */
+	private boolean cancelRemoval(final Object value) {
+		final Integer removedCount = removedValues.get(value);
+
+		if (removedCount == null) {
+			return false;
+		}
+
+		if (removedCount == 1) {
+			removedValues.remove(value);
+
+		} else {
+			removedValues.put(value, removedCount - 1);
+		}
+
+		return true;
+	}
+
+	/**
+	 * The aggregate of the values - null if there are none to aggregate (counts are zero).
+	 */
+	Object getResult() {
+		switch (type) {
+			case COUNT:
+				return count;
+
+			case SUM:
+				if (numberCount == 0) {
+					return null;
+				}
+
+				return (doubleCount == 0) ? (Object) longSum : (Object) (longSum + doubleSum + doubleCompensation);
+
+			case AVERAGE:
+				return (numberCount == 0) ? null : (longSum + doubleSum + doubleCompensation) / numberCount;
+
+			default:
+				return heap.peek();
+		}
+	}
+
+	/**
+	 * Integers, Longs, Shorts and Bytes.
+	 */
+	private static boolean isWholeNumber(final Object value) {
+		return (value instanceof Number) && !(value instanceof Double) && !(value instanceof Float) && !(value instanceof BigDecimal) && !(value instanceof BigInteger);
+	}
+}
@@ -0,0 +1,303 @@
+package com.notlob.jgrid.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.notlob.jgrid.providers.IGridContentProvider;
+
+/**
+ * Aggregates the values of each group's children for any columns with an aggregate - the aggregates are the values of
+ * the group's parent element in those columns.
+ *
+ * Each child's values (and the group they went to) are remembered, so an update only takes the child's old values out
+ * of the group's aggregates and puts the new ones in. The GridModel re-sorts and re-filters the parent of any group
+ * whose aggregates have actually changed.
+ *
+ * NOTE: This is an internal class not to be manipulated by client code.
+ *
+ * @author Stef
+ */
+public class AggregateModel<T> {
+
+	private final GridModel<T> gridModel;
+
+	// The aggregated columns, their aggregate types and each column's position in the aggregated values.
+	private final List<Column> columns;
+	private final List<AggregateType> types;
+	private final Map<Column, Integer> columnIndexes;
+
+	// What each child element has put into which group.
+	private final Map<T, Contribution<T>> contributions;
+
+	// The aggregates of each group (keyed by the parent element).
+	private final Map<T, Aggregates> aggregates;
+
+	// Groups whose children have changed (and their aggregates before the changes) since they were last taken.
+	private final Map<T, Object[]> changedGroups;
+
+	private static class Contribution<T> {
+		private T parent;
+		private Object[] values;
+
+		private Contribution(final T parent, final Object[] values) {
+			this.parent = parent;
+			this.values = values;
+		}
+	}
+
+	private static class Aggregates {
+		// One accumulator for each aggregated column.
+		private final Accumulator[] accumulators;
+
+		// The group's aggregates are discarded once no children contribute to them.
+		private int childCount = 0;
+
+		private Aggregates(final Accumulator[] accumulators) {
+			this.accumulators = accumulators;
+		}
+	}
+
+	public AggregateModel(final GridModel<T> gridModel) {
+		this.gridModel = gridModel;
+		this.columns = new ArrayList<>();
+		this.types = new ArrayList<>();
+		this.columnIndexes = new IdentityHashMap<>();
+		this.contributions = new HashMap<>();
+		this.aggregates = new HashMap<>();
+		this.changedGroups = new LinkedHashMap<>();
+	}
+
+	public boolean isAggregated(final Column column) {
+		return !columnIndexes.isEmpty() && columnIndexes.containsKey(column);
+	}
+
+	public AggregateType getAggregateType(final Column column) {
+		final Integer index = columnIndexes.get(column);
+		return (index == null) ? null : types.get(index);
+	}
+
+	public List<Column> getColumns() {
+		return Collections.unmodifiableList(columns);
+	}
+
+	/**
+	 * Aggregate the column (or stop if the type is null). The GridModel must rebuild the aggregates afterwards.
+	 */
+	void setAggregateType(final Column column, final AggregateType type) {
+		final Integer index = columnIndexes.get(column);
+
+		if (index != null) {
+			columns.remove((int) index);
+			types.remove((int) index);
+		}
+
+		if (type != null) {
+			columns.add(column);
+			types.add(type);
+		}
+
+		columnIndexes.clear();
+		for (int columnIndex=0; columnIndex<columns.size(); columnIndex++) {
+			columnIndexes.put(columns.get(columnIndex), columnIndex);
+		}
+	}
+
+	/**
+	 * The aggregate of the group's children in the column.
+	 */
+	public Object getValue(final Column column, final T parent) {
+		final Integer index = columnIndexes.get(column);
+		final Aggregates groupAggregates = aggregates.get(parent);
+
+		if (index == null) {
+			return null;
+
+		} else if (groupAggregates == null) {
+			//
+			// No children.
+			//
+			return (types.get(index) == AggregateType.COUNT) ? (Object) 0 : null;
+		}
+
+		return groupAggregates.accumulators[index].getResult();
+	}
+
+	/**
+	 * Put the element's values into it's group's aggregates.
+	 */
+	void add(final T element) {
+		if (columns.isEmpty()) {
+			return;
+		}
+
+		final T parent = getContentProvider().getParent(element);
+		final Object[] values = getValues(element);
+
+		contributions.put(element, new Contribution<T>(parent, values));
+		addValues(parent, values);
+	}
+
+	/**
+	 * Take the element's values out of it's group's aggregates.
+	 */
+	void remove(final T element) {
+		final Contribution<T> contribution = contributions.remove(element);
+
+		if (contribution != null) {
+			removeValues(contribution.parent, contribution.values);
+		}
+
+		changedGroups.remove(element);
+	}
+
+	/**
+	 * The element's values (or group) may have changed - if so move it's values from the old group's aggregates to the new
+	 * group's.
+	 */
+	void update(final T element) {
+		if (columns.isEmpty()) {
+			return;
+		}
+
+		final Contribution<T> contribution = contributions.get(element);
+
+		if (contribution == null) {
+			add(element);
+			return;
+		}
+
+		final T parent = getContentProvider().getParent(element);
+		final Object[] values = getValues(element);
+
+		if ((parent != contribution.parent) || !Arrays.equals(values, contribution.values)) {
+			removeValues(contribution.parent, contribution.values);
+			addValues(parent, values);
+			contribution.parent = parent;
+			contribution.values = values;
+		}
+	}
+
+	/**
+	 * Discard the aggregates and aggregate the elements from scratch.
+	 */
+	void rebuild(final Collection<T> elements) {
+		clear();
+
+		if (!columns.isEmpty()) {
+			for (final T element : elements) {
+				add(element);
+			}
+
+			changedGroups.clear();
+		}
+	}
+
+	void clear() {
+		contributions.clear();
+		aggregates.clear();
+		changedGroups.clear();
+	}
+
+	/**
+	 * The parent elements of the groups whose aggregates have changed since the last call.
+	 */
+	List<T> takeChangedGroups() {
+		final List<T> parents = new ArrayList<>();
+
+		for (final Map.Entry<T, Object[]> entry : changedGroups.entrySet()) {
+			if (!Arrays.equals(entry.getValue(), getResults(entry.getKey()))) {
+				parents.add(entry.getKey());
+			}
+		}
+
+		changedGroups.clear();
+		return parents;
+	}
+
+	private void addValues(final T parent, final Object[] values) {
+		if (parent == null) {
+			return;
+		}
+
+		noteChange(parent);
+		Aggregates groupAggregates = aggregates.get(parent);
+
+		if (groupAggregates == null) {
+			final Accumulator[] accumulators = new Accumulator[columns.size()];
+			for (int index=0; index<columns.size(); index++) {
+				accumulators[index] = new Accumulator(types.get(index), columns.get(index).getComparator());
+			}
+
+			groupAggregates = new Aggregates(accumulators);
+			aggregates.put(parent, groupAggregates);
+		}
+
+		for (int index=0; index<values.length; index++) {
+			groupAggregates.accumulators[index].add(values[index]);
+		}
+
+		groupAggregates.childCount++;
+	}
+
+	private void removeValues(final T parent, final Object[] values) {
+		final Aggregates groupAggregates = (parent == null) ? null : aggregates.get(parent);
+
+		if (groupAggregates == null) {
+			return;
+		}
+
+		noteChange(parent);
+
+		if (--groupAggregates.childCount == 0) {
+			aggregates.remove(parent);
+
+		} else {
+			for (int index=0; index<values.length; index++) {
+				groupAggregates.accumulators[index].remove(values[index]);
+			}
+		}
+	}
+
+	/**
+	 * Note the group's current aggregates if this is the first change to them.
+	 */
+	private void noteChange(final T parent) {
+		if (!changedGroups.containsKey(parent)) {
+			changedGroups.put(parent, getResults(parent));
+		}
+	}
+
+	private Object[] getResults(final T parent) {
+		final Object[] results = new Object[columns.size()];
+
+		for (int index=0; index<columns.size(); index++) {
+			results[index] = getValue(columns.get(index), parent);
+		}
+
+		return results;
+	}
+
+	/**
+	 * The (non-aggregated) values of the element in each aggregated column.
+	 */
+	private Object[] getValues(final T element) {
+		final Object[] values = new Object[columns.size()];
+
+		for (int index=0; index<columns.size(); index++) {
+			values[index] = getContentProvider().getValue(columns.get(index), element);
+		}
+
+		return values;
+	}
+
+	private IGridContentProvider<T> getContentProvider() {
+		return gridModel.getContentProvider();
+	}
+}
@@ -0,0 +1,13 @@
+package com.notlob.jgrid.model;
+
+/**
+ * How a column's values are aggregated. Null values are ignored (so COUNT is the number of non-null values). Sums and
+ * averages ignore values which aren't Numbers, minimums and maximums use the column's comparator.
+ */
+public enum AggregateType {
+	SUM,
+	COUNT,
+	AVERAGE,
+	MIN,
+	MAX
+}
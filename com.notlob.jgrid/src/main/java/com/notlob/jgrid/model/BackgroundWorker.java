@@ -0,0 +1,165 @@
+package com.notlob.jgrid.model;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the expensive part of a sort or filter on a pool thread, then publishes the result on the display thread - which
+ * is the only thread the model is ever modified on. Until the result is published, the grid carries on painting the
+ * rows as they were.
+ *
+ * Each kind of work has a generation counter. Submitting more work of the same kind supersedes (cancels) anything
+ * still running for the counter, as does bumping the counter directly (i.e. a synchronous sort).
+ *
+ * Rows the display thread shows, hides or updates after a task was submitted are 'touched' as far as that task is
+ * concerned. It's result is stale for those rows, so it's publisher should leave them where the display thread put them.
+ *
+ * NOTE: This is an internal class not to be manipulated by client code.
+ *
+ * @author Stef
+ */
+public class BackgroundWorker<T> {
+
+	/**
+	 * The work done away from the display thread. It must not touch the model, only the snapshot it was given.
+	 */
+	public interface Task<R> {
+		/**
+		 * Return the result, or null if the task noticed it's been cancelled.
+		 */
+		R run(final BooleanSupplier cancelled);
+	}
+
+	// Shared by every grid. The threads are daemons so they never keep the application alive.
+	private final static ExecutorService pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+		final Thread thread = new Thread(runnable, "jGrid background worker");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	// Runs publishers on the display thread.
+	private final Executor displayExecutor;
+
+	// The number of tasks submitted and not yet published (or discarded). Only used on the display thread.
+	private int pendingTasks = 0;
+
+	// Counts submissions - each task is stamped with the count when it's submitted.
+	private int submissions = 0;
+	
+	// The stamp of the task being published.
+	private int publishingStamp = 0;
+
+	// Rows shown, hidden or updated while tasks are pending and the number of submissions at the time. Only used on the
+	// display thread.
+	private final Map<Row<T>, Integer> touchedRows;
+
+	// Set when the worker is replaced or switched off - anything still pending is discarded.
+	private volatile boolean disposed = false;
+
+	private final static Logger logger = LoggerFactory.getLogger(BackgroundWorker.class);
+
+	public BackgroundWorker(final Executor displayExecutor) {
+		this.displayExecutor = displayExecutor;
+		this.touchedRows = new IdentityHashMap<>();
+	}
+
+	/**
+	 * Run the task on the pool then, if it hasn't been superseded, pass it's result to the publisher on the display thread.
+	 */
+	public <R> void submit(final AtomicInteger generation, final Task<R> task, final Consumer<R> publisher) {
+		final int ticket = generation.incrementAndGet();
+		final BooleanSupplier cancelled = () -> disposed || (generation.get() != ticket);
+		final int stamp = ++submissions;
+		pendingTasks++;
+
+		pool.execute(() -> {
+			R result = null;
+
+			try {
+				if (!cancelled.getAsBoolean()) {
+					result = task.run(cancelled);
+				}
+
+			} catch (final CancellationException ex) {
+				// Superseded.
+
+			} catch (final RuntimeException ex) {
+				//
+				// The snapshot can be inconsistent if it was superseded mid-flight (i.e. a comparator contract violation).
+				//
+				if (!cancelled.getAsBoolean()) {
+					logger.error("Background task failed", ex);
+				}
+			}
+
+			publish(result, stamp, cancelled, publisher);
+		});
+	}
+
+	private <R> void publish(final R result, final int stamp, final BooleanSupplier cancelled, final Consumer<R> publisher) {
+		try {
+			displayExecutor.execute(() -> {
+				pendingTasks--;
+
+				try {
+					if ((result != null) && !cancelled.getAsBoolean()) {
+						publishingStamp = stamp;
+						publisher.accept(result);
+					}
+
+				} finally {
+					if (pendingTasks == 0) {
+						touchedRows.clear();
+					}
+				}
+			});
+
+		} catch (final RuntimeException ex) {
+			//
+			// The display has been disposed of - so there's nothing to publish to.
+			//
+			logger.debug("Background result discarded", ex);
+		}
+	}
+
+	/**
+	 * Called on the display thread whenever a row is shown, hidden or updated.
+	 */
+	public void touch(final Row<T> row) {
+		if (pendingTasks > 0) {
+			touchedRows.put(row, submissions);
+		}
+	}
+
+	/**
+	 * True if the row has been touched since the task being published was submitted.
+	 */
+	public boolean isTouched(final Row<T> row) {
+		final Integer touched = touchedRows.get(row);
+		return (touched != null) && (touched >= publishingStamp);
+	}
+
+	/**
+	 * True if there are results yet to be published.
+	 */
+	public boolean isBusy() {
+		return (pendingTasks > 0);
+	}
+
+	/**
+	 * Discard any pending work.
+	 */
+	public void dispose() {
+		disposed = true;
+	}
+}
@@ -0,0 +1,113 @@
+package com.notlob.jgrid.model;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Everything that changed in the grid's elements and selection during one change - a single call to add, update or
+ * remove elements or change the selection, or everything between disabling and re-enabling the grid's events.
+ *
+ * The changes are net - an element added then removed in the same change set isn't in either, an element updated then
+ * removed is only removed.
+ *
+ * @author Stef
+ */
+public class ChangeSet<T> {
+
+	private boolean reset;
+	private final Set<T> added;
+	private final Set<T> updated;
+	private final Set<T> removed;
+	private SelectionChange<T> selectionChange;
+
+	ChangeSet() {
+		this.added = new LinkedHashSet<>();
+		this.updated = new LinkedHashSet<>();
+		this.removed = new LinkedHashSet<>();
+	}
+
+	/**
+	 * True if all of the elements were replaced (or cleared) - anything held about the previous elements should be
+	 * discarded before the rest of the change is applied.
+	 */
+	public boolean isReset() {
+		return reset;
+	}
+
+	public Collection<T> getAddedElements() {
+		return Collections.unmodifiableSet(added);
+	}
+
+	public Collection<T> getUpdatedElements() {
+		return Collections.unmodifiableSet(updated);
+	}
+
+	public Collection<T> getRemovedElements() {
+		return Collections.unmodifiableSet(removed);
+	}
+
+	/**
+	 * The change to the row selection - or null if the selection didn't change.
+	 */
+	public SelectionChange<T> getSelectionChange() {
+		return selectionChange;
+	}
+
+	public boolean isEmpty() {
+		return !reset && added.isEmpty() && updated.isEmpty() && removed.isEmpty() && (selectionChange == null);
+	}
+
+	void reset() {
+		reset = true;
+		added.clear();
+		updated.clear();
+		removed.clear();
+	}
+
+	void added(final Collection<T> elements) {
+		for (final T element : elements) {
+			//
+			// An element removed then added back has changed, rather than been added.
+			//
+			if (removed.remove(element)) {
+				updated.add(element);
+
+			} else {
+				added.add(element);
+			}
+		}
+	}
+
+	void updated(final Collection<T> elements) {
+		for (final T element : elements) {
+			if (!added.contains(element)) {
+				updated.add(element);
+			}
+		}
+	}
+
+	void removed(final Collection<T> elements) {
+		for (final T element : elements) {
+			if (!added.remove(element)) {
+				updated.remove(element);
+				removed.add(element);
+			}
+		}
+	}
+
+	void selectionChanged(final SelectionChange<T> change) {
+		if (selectionChange == null) {
+			selectionChange = change.copy();
+
+		} else {
+			selectionChange.merge(change);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("ChangeSet : Reset [%s] Added [%s] Updated [%s] Removed [%s] %s", reset, added.size(), updated.size(), removed.size(), selectionChange);
+	}
+}
@@ -1,6 +1,5 @@
 package com.notlob.jgrid.model;
 
-import java.text.Collator;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
@@ -38,7 +37,7 @@ public class Column {
 		this.columnId = columnId;
 		this.width = 125;
 		this.sortDirection = SortDirection.NONE;
-		this.comparator = new DefaultComparator();
+		this.comparator = new DefaultColumnComparator();
 		this.visible = true;
 		this.pinned = false;
 		this.wrap = false;
@@ -201,24 +200,4 @@ public class Column {
 
 		return false;
 	}
-
-	private class DefaultComparator implements Comparator<Object> {
-		@Override
-		public int compare(final Object o1, final Object o2) {
-
-			if ((o1 == null) && (o2 == null)) {
-				return 0;
-			}
-
-			if (o1 == null) {
-				return -1;
-			}
-
-			if (o2 == null) {
-				return 1;
-			}
-			
-			return Collator.getInstance().compare(String.valueOf(o1), String.valueOf(o2));
-		}
-	}
 }
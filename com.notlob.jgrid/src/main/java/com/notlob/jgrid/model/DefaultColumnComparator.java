@@ -0,0 +1,187 @@
+package com.notlob.jgrid.model;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.Comparator;
+
+/**
+ * The comparator a column uses unless it's given another.
+ *
+ * The values are given a single total order (so a column of mixed types still sorts consistently) - nulls first, then
+ * numbers (by value, whatever their type), then text (with a Collator), then anything else. Other values of the same
+ * Comparable type (Dates, etc.) are compared directly, values of differing types are ordered by their class name.
+ *
+ * The SortModel converts strings into CollationKeys when it extracts a row's sort key (see getSortValue) - so the
+ * collation work is done once per row and column, rather than on every comparison.
+ *
+ * @author Stef
+ */
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public class DefaultColumnComparator implements Comparator<Object> {
+
+	// Cached - Collator.getInstance creates a new collator on each call.
+	private final Collator collator;
+
+	// The order of the kinds of values.
+	private final static int RANK__NUMBER = 0;
+	private final static int RANK__TEXT = 1;
+	private final static int RANK__OTHER = 2;
+
+	public DefaultColumnComparator() {
+		collator = Collator.getInstance();
+	}
+
+	/**
+	 * Convert a value into the form which is quickest to compare repeatedly.
+	 */
+	public Object getSortValue(final Object value) {
+		if (value instanceof String) {
+			return collator.getCollationKey((String) value);
+		}
+
+		return value;
+	}
+
+	@Override
+	public int compare(final Object o1, final Object o2) {
+
+		if ((o1 == null) && (o2 == null)) {
+			return 0;
+		}
+
+		if (o1 == null) {
+			return -1;
+		}
+
+		if (o2 == null) {
+			return 1;
+		}
+
+		final int rank1 = getRank(o1);
+		final int rank2 = getRank(o2);
+
+		if (rank1 != rank2) {
+			return (rank1 < rank2) ? -1 : 1;
+		}
+
+		switch (rank1) {
+			case RANK__NUMBER:
+				return compareNumbers((Number) o1, (Number) o2);
+
+			case RANK__TEXT:
+				//
+				// CollationKeys from our collator are compared directly.
+				//
+				if ((o1 instanceof CollationKey) && (o2 instanceof CollationKey)) {
+					return ((CollationKey) o1).compareTo((CollationKey) o2);
+				}
+
+				return collator.compare(getText(o1), getText(o2));
+
+			default:
+				if (o1.getClass() != o2.getClass()) {
+					return o1.getClass().getName().compareTo(o2.getClass().getName());
+				}
+
+				if (o1 instanceof Comparable) {
+					return ((Comparable) o1).compareTo(o2);
+				}
+
+				return collator.compare(getText(o1), getText(o2));
+		}
+	}
+
+	private static int getRank(final Object value) {
+		if (value instanceof Number) {
+			return RANK__NUMBER;
+
+		} else if ((value instanceof String) || (value instanceof CollationKey)) {
+			return RANK__TEXT;
+		}
+
+		return RANK__OTHER;
+	}
+
+	/**
+	 * Compare numbers by value - even if they're of differing types.
+	 */
+	private static int compareNumbers(final Number n1, final Number n2) {
+		//
+		// Compare floating point values as primitives, so -0.0 equals 0.0 (as it does to an integer 0).
+		//
+		if (isFloatingPoint(n1) && isFloatingPoint(n2)) {
+			final double value1 = n1.doubleValue();
+			final double value2 = n2.doubleValue();
+			return (value1 == value2) ? 0 : Double.compare(value1, value2);
+		}
+
+		if ((n1.getClass() == n2.getClass()) && (n1 instanceof Comparable)) {
+			return ((Comparable) n1).compareTo(n2);
+		}
+
+		if (isIntegral(n1) && isIntegral(n2)) {
+			return Long.compare(n1.longValue(), n2.longValue());
+		}
+
+		//
+		// NaN and the infinities have no exact value - but they're beyond (or above, for NaN) every finite value anyway.
+		//
+		if (!isFinite(n1) || !isFinite(n2)) {
+			return Double.compare(n1.doubleValue(), n2.doubleValue());
+		}
+
+		return toBigDecimal(n1).compareTo(toBigDecimal(n2));
+	}
+
+	private static boolean isIntegral(final Number number) {
+		return (number instanceof Integer) || (number instanceof Long) || (number instanceof Short) || (number instanceof Byte);
+	}
+
+	private static boolean isFloatingPoint(final Number number) {
+		return (number instanceof Double) || (number instanceof Float);
+	}
+
+	private static boolean isFinite(final Number number) {
+		if (isFloatingPoint(number)) {
+			final double value = number.doubleValue();
+			return !Double.isNaN(value) && !Double.isInfinite(value);
+		}
+
+		return true;
+	}
+
+	private static BigDecimal toBigDecimal(final Number number) {
+		if (number instanceof BigDecimal) {
+			return (BigDecimal) number;
+
+		} else if (number instanceof BigInteger) {
+			return new BigDecimal((BigInteger) number);
+
+		} else if (isIntegral(number)) {
+			return BigDecimal.valueOf(number.longValue());
+
+		} else if (isFloatingPoint(number)) {
+			return new BigDecimal(number.doubleValue());
+		}
+
+		//
+		// Any other type of number (i.e. AtomicLong) - it's text is it's exact value.
+		//
+		try {
+			return new BigDecimal(number.toString());
+
+		} catch (final NumberFormatException e) {
+			return new BigDecimal(number.doubleValue());
+		}
+	}
+
+	private String getText(final Object value) {
+		if (value instanceof CollationKey) {
+			return ((CollationKey) value).getSourceString();
+		}
+
+		return String.valueOf(value);
+	}
+}
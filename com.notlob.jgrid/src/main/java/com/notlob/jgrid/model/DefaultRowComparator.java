@@ -54,8 +54,31 @@ public class DefaultRowComparator<T> implements Comparator<Row<T>> {
 		return gridModel.getSortModel().getSortedColumns();
 	}
 	
+	/**
+	 * True if rows are compared on their cached sort keys - which also allows them to be sorted in the background.
+	 * 
+	 * A sub-class which only customises the SortKey methods may return true, otherwise it's rows are compared through the
+	 * (deprecated) Row/element methods so any existing overrides of them are still used.
+	 */
+	protected boolean isSortKeySupported() {
+		return (getClass() == DefaultRowComparator.class);
+	}
+	
 	@Override
 	public int compare(final Row<T> row1, final Row<T> row2) {
+		if (!isSortKeySupported()) {
+			return compareRows(row1, row2);
+		}
+		
+		final SortModel<T> sortModel = gridModel.getSortModel();
+		return compare(sortModel.getSortKey(row1), sortModel.getSortKey(row2), getSortedColumns());
+	}
+	
+	/**
+	 * Compare two rows by going to the content provider for their values.
+	 */
+	@SuppressWarnings("deprecation")
+	private int compareRows(final Row<T> row1, final Row<T> row2) {
 		//
 		// Compare a parent with one of it's children.
 		//
@@ -113,10 +136,76 @@ public class DefaultRowComparator<T> implements Comparator<Row<T>> {
 		//
 		return compareElements(row1.getElement(), row2.getElement(), REASON_SUFFIX__NON_GROUP_ROWS, row1, row2);
 	}
+	
+	/**
+	 * Compare two rows by their sort keys. This only reads the keys (and the columns' comparators) so can be used away 
+	 * from the display thread on a copy of the keys.
+	 */
+	public int compare(final SortKey<T> key1, final SortKey<T> key2, final List<Column> sortedColumns) {
+		//
+		// Compare a parent with one of it's children.
+		//
+		if (isParentOf(key1, key2)) {
+			return logResult(parentRowsAboveChildren ? -1 : 1, key1, key2, REASON__ROW_PARENT_OF_ROW);
+
+		} else if (isParentOf(key2, key1)) {
+			return logResult(parentRowsAboveChildren ? 1 : -1, key1, key2, REASON__ROW_CHILD_OF_ROW);
+		}
+
+		//
+		// Compare siblings within the same group.
+		//
+		if (isSameGroup(key1, key2)) {
+			return compareElements(key1, key2, sortedColumns, REASON_SUFFIX__SAME_GROUP, key1, key2);
+		}
+
+		//
+		// Compare non-group row with a group-rows' parent.
+		//
+		if (key1.isGroup() && !key2.isGroup()) {
+			switch (groupMixType) {
+			case SORT__GROUPS_ABOVE_NON_GROUPS:
+				return logResult(-1, key1, key2, REASON__ONE_GROUP_ONE_NONE_GROUP);
+				
+			case SORT__NON_GROUPS_ABOVE_GROUPS:
+				return logResult(1, key1, key2, REASON__ONE_GROUP_ONE_NONE_GROUP);
+				
+			case SORT__NON_GROUPS_WITH_GROUP_PARENTS:
+				return compareElements(key1.getParentOrOwnKey(), key2, sortedColumns, REASON_SUFFIX__MIX_GROUP_WITH_NONE_GROUP, key1, key2);
+			}
+
+		} else if (!key1.isGroup() && key2.isGroup()) {
+			switch (groupMixType) {
+			case SORT__GROUPS_ABOVE_NON_GROUPS:
+				return logResult(1, key1, key2, REASON__ONE_NONE_GROUP_ONE_GROUP);
+				
+			case SORT__NON_GROUPS_ABOVE_GROUPS:
+				return logResult(-1, key1, key2, REASON__ONE_NONE_GROUP_ONE_GROUP);
+				
+			case SORT__NON_GROUPS_WITH_GROUP_PARENTS:
+				return compareElements(key1, key2.getParentOrOwnKey(), sortedColumns, REASON_SUFFIX__MIX_NONE_GROUP_WITH_GROUP, key1, key2);
+			}
+		}
+
+		//
+		// Compare the parents of two group rows (from differing groups).
+		//
+		if (key1.isGroup() && key2.isGroup() && key1.getParentOrOwnElement() != null && key2.getParentOrOwnElement() != null) {
+			return compareElements(key1.getParentOrOwnKey(), key2.getParentOrOwnKey(), sortedColumns, REASON_SUFFIX__DIFFERENT_GROUPS, key1, key2);
+		}
+
+		//
+		// Compare two non-group rows.
+		//
+		return compareElements(key1, key2, sortedColumns, REASON_SUFFIX__NON_GROUP_ROWS, key1, key2);
+	}
 
 	/**
 	 * Return true if row1 is a parent of row2.
+	 * 
+	 * @deprecated Only used when the sort keys aren't supported - see isParentOf(SortKey, SortKey).
 	 */
+	@Deprecated
 	protected boolean isParentOf(final Row<T> row1, final Row<T> row2) {
 		return (row1.getElement() == gridModel.getContentProvider().getParent(row2.getElement()));
 	}
@@ -124,9 +213,12 @@ public class DefaultRowComparator<T> implements Comparator<Row<T>> {
 	/**
 	 * Protect against comparisons between parent rows (that don't have a field for the sorted column)
 	 * and child rows.
+	 * 
+	 * @deprecated Only used when the sort keys aren't supported - the SortModel extracts the values into the keys.
 	 */
+	@Deprecated
 	protected Object getValue(final Column column, final T element) {
-		if ((gridModel.getGroupRenderStyle() == GroupRenderStyle.INLINE) && gridModel.isParentElement(element) && !gridModel.getGroupByColumns().contains(column)) {
+		if ((gridModel.getGroupRenderStyle() == GroupRenderStyle.INLINE) && gridModel.isParentElement(element) && !gridModel.getGroupByColumns().contains(column) && !gridModel.getAggregateModel().isAggregated(column)) {
 			return null;
 		}
 
@@ -136,9 +228,9 @@ public class DefaultRowComparator<T> implements Comparator<Row<T>> {
 	/**
 	 * Compare rows with one another using the column comparators in the sort model.
 	 *
-	 * If there are no sorts applied, then row element's ids are used as a way of stopping rows from
-	 * jumping around whenever sorts are cleared.
+	 * @deprecated Only used when the sort keys aren't supported - see compareElements(SortKey, SortKey, ...).
 	 */
+	@Deprecated
 	@SuppressWarnings("unchecked")
 	protected int compareElements(final T element1, final T element2, final String reason, final Row<T> row1, final Row<T> row2) {
 		int result = 0;
@@ -174,13 +266,92 @@ public class DefaultRowComparator<T> implements Comparator<Row<T>> {
 	/**
 	 * If there are no sorted columns to compare with - or if they yield an equal results,
 	 * Fall-back on the index of the element.
+	 * 
+	 * @deprecated Only used when the sort keys aren't supported - see compareAtRowLevel(SortKey, SortKey, ...).
 	 */
+	@Deprecated
 	protected int compareAtRowLevel(final T element1, final T element2, final String reason, final Row<T> row1, final Row<T> row2) {
 		final int value1 = getContentProvider().getNaturalIndex(element1);
 		final int value2 = getContentProvider().getNaturalIndex(element2);
 		final int result = value1 > value2 ? +1 : value1 < value2 ? -1 : 0;
 		return logResult(result, row1, row2, REASON__NATURAL_INDEX);
 	}
+
+	/**
+	 * Return true if key1's element is a parent of key2's element.
+	 */
+	protected boolean isParentOf(final SortKey<T> key1, final SortKey<T> key2) {
+		return (key1.getElement() == key2.getParent());
+	}
+	
+	/**
+	 * Return true if both keys are group elements from the same group.
+	 */
+	protected boolean isSameGroup(final SortKey<T> key1, final SortKey<T> key2) {
+		return (key1.isGroup() && key2.isGroup() && (key1.getParentOrOwnElement() == key2.getParentOrOwnElement()));
+	}
+
+	/**
+	 * Compare rows with one another using the column comparators in the sort model. The values compared are those
+	 * extracted into the sort keys, rather than being fetched from the content provider for every comparison.
+	 *
+	 * If there are no sorts applied, then row element's ids are used as a way of stopping rows from
+	 * jumping around whenever sorts are cleared.
+	 */
+	@SuppressWarnings("unchecked")
+	protected int compareElements(final SortKey<T> key1, final SortKey<T> key2, final List<Column> sortedColumns, final String reason, final SortKey<T> rowKey1, final SortKey<T> rowKey2) {
+		int result = 0;
+
+		//
+		// Compare using column comparators.
+		//
+		for (int index=0; index<sortedColumns.size(); index++) {
+			final Column column = sortedColumns.get(index);
+			
+			if (column.getSortDirection() != SortDirection.NONE) {
+				result = column.getComparator().compare(key1.getValue(index), key2.getValue(index));
+
+				if (column.getSortDirection() == SortDirection.DESC) {
+					result *= -1;
+				}
+
+				//
+				// Don't use more comparators than we have to.
+				//
+				if (result != 0) {
+					return logResult(result, rowKey1, rowKey2, column, reason);
+				}
+			}
+		}
+
+		//
+		// Fall-back on the index of the element.
+		//
+		return compareAtRowLevel(key1, key2, reason, rowKey1, rowKey2);
+	}
+	
+	/**
+	 * If there are no sorted columns to compare with - or if they yield an equal results,
+	 * Fall-back on the index of the element.
+	 */
+	protected int compareAtRowLevel(final SortKey<T> key1, final SortKey<T> key2, final String reason, final SortKey<T> rowKey1, final SortKey<T> rowKey2) {
+		final int value1 = key1.getNaturalIndex();
+		final int value2 = key2.getNaturalIndex();
+		final int result = value1 > value2 ? +1 : value1 < value2 ? -1 : 0;
+		return logResult(result, rowKey1, rowKey2, REASON__NATURAL_INDEX);
+	}
+	
+	/**
+	 * Return the specified column comparison result. The reason is only built if we're tracing, as this is called for 
+	 * most comparisons.
+	 */
+	private int logResult(final int result, final SortKey<T> key1, final SortKey<T> key2, final Column column, final String reason) {
+		if (logger.isTraceEnabled()) {
+			return logResult(result, key1, key2, REASON_PREFIX__COLUMN_COMPARATOR + column.getCaption() + REASON_CONJUNCTIVE__BECAUSE + reason);
+		}
+		
+		return result;
+	}
 	
 	/**
 	 * Return the specified result, but if we're tracing, log a trace entry with the specified reason.
@@ -192,4 +363,15 @@ public class DefaultRowComparator<T> implements Comparator<Row<T>> {
 		
 		return result;
 	}
+	
+	/**
+	 * Return the specified result, but if we're tracing, log a trace entry with the specified reason.
+	 */
+	private int logResult(final int result, final SortKey<T> key1, final SortKey<T> key2, final String reason) {
+		if (logger.isTraceEnabled()) {
+			logger.trace(String.format(reason, result, getContentProvider().getElementId(key1.getElement()), getContentProvider().getElementId(key2.getElement())));
+		}
+		
+		return result;
+	}
 }
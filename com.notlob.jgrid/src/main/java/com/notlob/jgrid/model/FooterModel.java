@@ -0,0 +1,197 @@
+package com.notlob.jgrid.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aggregates the values of the visible rows for any columns with a footer aggregate - these are shown in the grid's
+ * footer row.
+ *
+ * Parent rows are left out, so children aren't counted twice - a row's values leave the footer when it becomes a parent
+ * and return if it stops being one. The GridModel tells the footer as each row is shown, hidden, updated or removed, and
+ * the footer remembers each row's values - so only the row's old values are taken out and it's new values put in. The
+ * rows are only scanned when the aggregated columns change.
+ *
+ * Only what's shown is aggregated - so collapsing a group takes it's children out of the footer just as filtering them
+ * out would (and the parent row, which is never counted, doesn't stand in for them).
+ *
+ * NOTE: This is an internal class not to be manipulated by client code.
+ *
+ * @author Stef
+ */
+public class FooterModel<T> {
+
+	private final GridModel<T> gridModel;
+
+	// The aggregated columns, their aggregate types and each column's position in the aggregated values.
+	private final List<Column> columns;
+	private final List<AggregateType> types;
+	private final Map<Column, Integer> columnIndexes;
+
+	// The values each visible row has put into the aggregates.
+	private final Map<T, Object[]> contributions;
+
+	// One accumulator for each aggregated column.
+	private Accumulator[] accumulators;
+
+	public FooterModel(final GridModel<T> gridModel) {
+		this.gridModel = gridModel;
+		this.columns = new ArrayList<>();
+		this.types = new ArrayList<>();
+		this.columnIndexes = new IdentityHashMap<>();
+		this.contributions = new HashMap<>();
+		this.accumulators = new Accumulator[0];
+	}
+
+	/**
+	 * True if any column has a footer aggregate - so the footer row should be shown.
+	 */
+	public boolean isShowFooter() {
+		return !columns.isEmpty();
+	}
+
+	public boolean isAggregated(final Column column) {
+		return !columnIndexes.isEmpty() && columnIndexes.containsKey(column);
+	}
+
+	public AggregateType getAggregateType(final Column column) {
+		final Integer index = columnIndexes.get(column);
+		return (index == null) ? null : types.get(index);
+	}
+
+	public List<Column> getColumns() {
+		return Collections.unmodifiableList(columns);
+	}
+
+	/**
+	 * Aggregate the column in the footer (or stop if the type is null). The GridModel must rebuild the footer afterwards.
+	 */
+	void setAggregateType(final Column column, final AggregateType type) {
+		final Integer index = columnIndexes.get(column);
+
+		if (index != null) {
+			columns.remove((int) index);
+			types.remove((int) index);
+		}
+
+		if (type != null) {
+			columns.add(column);
+			types.add(type);
+		}
+
+		columnIndexes.clear();
+		for (int columnIndex=0; columnIndex<columns.size(); columnIndex++) {
+			columnIndexes.put(columns.get(columnIndex), columnIndex);
+		}
+	}
+
+	/**
+	 * The aggregate of the visible rows in the column - or null if the column isn't aggregated.
+	 */
+	public Object getValue(final Column column) {
+		final Integer index = columnIndexes.get(column);
+		return (index == null) ? null : accumulators[index].getResult();
+	}
+
+	/**
+	 * Put the visible row's values into the aggregates - unless they're already in.
+	 */
+	void show(final Row<T> row) {
+		if (columns.isEmpty() || contributions.containsKey(row.getElement()) || row.isParentRow()) {
+			return;
+		}
+
+		final Object[] values = getValues(row.getElement());
+		contributions.put(row.getElement(), values);
+		addValues(values);
+	}
+
+	/**
+	 * Take the hidden (or removed) row's values out of the aggregates.
+	 */
+	void hide(final Row<T> row) {
+		if (columns.isEmpty()) {
+			return;
+		}
+
+		final Object[] values = contributions.remove(row.getElement());
+
+		if (values != null) {
+			removeValues(values);
+		}
+	}
+
+	/**
+	 * The row's values may have changed - if it's in the aggregates, replace it's old values with the new ones.
+	 */
+	void update(final Row<T> row) {
+		if (columns.isEmpty()) {
+			return;
+		}
+
+		final Object[] oldValues = contributions.get(row.getElement());
+
+		if (oldValues != null) {
+			final Object[] values = getValues(row.getElement());
+
+			if (!Arrays.equals(values, oldValues)) {
+				removeValues(oldValues);
+				addValues(values);
+				contributions.put(row.getElement(), values);
+			}
+		}
+	}
+
+	/**
+	 * Discard the aggregates and aggregate the visible rows from scratch.
+	 */
+	void rebuild(final Collection<Row<T>> visibleRows) {
+		clear();
+
+		if (!columns.isEmpty()) {
+			for (final Row<T> row : visibleRows) {
+				show(row);
+			}
+		}
+	}
+
+	void clear() {
+		contributions.clear();
+		accumulators = new Accumulator[columns.size()];
+
+		for (int index=0; index<columns.size(); index++) {
+			accumulators[index] = new Accumulator(types.get(index), columns.get(index).getComparator());
+		}
+	}
+
+	private void addValues(final Object[] values) {
+		for (int index=0; index<values.length; index++) {
+			accumulators[index].add(values[index]);
+		}
+	}
+
+	private void removeValues(final Object[] values) {
+		for (int index=0; index<values.length; index++) {
+			accumulators[index].remove(values[index]);
+		}
+	}
+
+	/**
+	 * The element's values in each aggregated column.
+	 */
+	private Object[] getValues(final T element) {
+		final Object[] values = new Object[columns.size()];
+
+		for (int index=0; index<columns.size(); index++) {
+			values[index] = gridModel.getContentProvider().getValue(columns.get(index), element);
+		}
+
+		return values;
+	}
+}
@@ -1,21 +1,32 @@
 package com.notlob.jgrid.model;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
 
 import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.widgets.Display;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.notlob.jgrid.Grid;
 import com.notlob.jgrid.Grid.GroupRenderStyle;
 import com.notlob.jgrid.model.filtering.FilterModel;
+import com.notlob.jgrid.model.filtering.TextIndex;
 import com.notlob.jgrid.providers.IGridContentProvider;
 import com.notlob.jgrid.providers.IGridLabelProvider;
+import com.notlob.jgrid.providers.IGroupElementProvider;
 import com.notlob.jgrid.providers.IRowProvider;
 import com.notlob.jgrid.styles.CellStyle;
 import com.notlob.jgrid.styles.StyleRegistry;
@@ -32,18 +43,27 @@ public class GridModel<T> {
 	
 	private final Grid<T> grid;
 
-	// Visible columns and rows.
-	private final List<Row<T>> rows;
+	// Visible columns and rows. The rows are held in a tree so positional inserts/removes and height offsets are O(log n).
+	private final RowList<T> rows;
 	private final List<Column> columns;
 
 	// All column definitions.
 	private final List<Column> allColumns;
 
-	// Rows which have been filtered out - they are not ordered.
+	// Rows which have been filtered out - they are not ordered. Each row's hiddenRowIndex is kept accurate so rows
+	// can be removed in constant time (by swapping the last hidden row into the gap).
 	private final List<Row<T>> hiddenRows;
 
 	// All Rows (including hidden), keyed by domain element.
 	private final Map<T, Row<T>> rowsByElement;
+	
+	// The number of parent rows in the model, and how many of them are hidden - so the detailed row counts are O(1).
+	private int parentRowCount = 0;
+	private int hiddenParentRowCount = 0;
+
+	// The next row ordinal to hand out, and the ordinals of removed rows which can be re-used.
+	private int nextOrdinal = 0;
+	private final Deque<Integer> freeOrdinals;
 
 	// Visible column headers, pinned rows, etc.
 	private final List<Row<T>> columnHeaderRows;
@@ -62,6 +82,9 @@ public class GridModel<T> {
 	
 	// The column headers are represented by this row.
 	private final Row<T> columnHeaderRow;
+	
+	// The footer (with the aggregates of the visible rows) is represented by this row.
+	private final Row<T> footerRow;
 
 	// Selection model (also Row has a selected property).
 	private final SelectionModel<T> selectionModel;
@@ -71,6 +94,18 @@ public class GridModel<T> {
 
 	// The filter model.
 	private final FilterModel<T> filterModel;
+	
+	// Groups the elements by the group-by columns (if there's a group element provider).
+	private final GroupModel<T> groupModel;
+	
+	// Aggregates the children of each group in any aggregated columns.
+	private final AggregateModel<T> aggregateModel;
+	
+	// Aggregates the visible rows for the footer row.
+	private final FooterModel<T> footerModel;
+	
+	// Indexes the text of any columns searched by TextSearchFilters.
+	private final TextIndex<T> textIndex;
 
 	// Visible styling model.
 	private final StyleRegistry<T> styleRegistry;
@@ -103,12 +138,24 @@ public class GridModel<T> {
 	// and stop firing rowCount-change notifications to any listeners.
 	private int suppressedEvents = 0;
 	
+	// The element and selection changes not yet committed to listeners. They're committed once the outermost change is
+	// complete and events aren't suppressed.
+	private ChangeSet<T> pendingChanges = new ChangeSet<>();
+	private int changeDepth = 0;
+	
+	// If set, sorts and filters are evaluated on a pool thread and published back on the display thread.
+	private BackgroundWorker<T> backgroundWorker;
+	
+	// Batches of at least this many rows, and at least 1/MERGE_FRACTION of the visible rows, are merged in by addElements.
+	private final static int MERGE_THRESHOLD = 64;
+	private final static int MERGE_FRACTION = 16;
+	
 	private final static Logger logger = LoggerFactory.getLogger(GridModel.class);
 
 	// An internal listener so the grid can broker events to public listeners or react to internal changes.
 	public interface IModelListener<T> {
 		void modelChanged();
-		void selectionChanged();
+		void selectionChanged(final SelectionChange<T> change);
 		void heightChanged(final int delta);
 		void rowCountChanged();
 		void filtersChanging();
@@ -122,15 +169,17 @@ public class GridModel<T> {
 		void columnSorted(final Column column);
 		void rowNumbersVisibilityChanged(final boolean visible);
 		void groupSelectorVisibilityChanged(final boolean visible);
+		void changesCommitted(final ChangeSet<T> changes);
 	}
 
 	public GridModel(final Grid<T> grid, final ResourceManager resourceManager, final GC gc) {
 		this.grid = grid;
 		this.resourceManager = resourceManager;
 		this.gc = gc; 
-		rows = new ArrayList<>();
+		rows = new RowList<>(this::getRowHeight);
 		rowsByElement = new LinkedHashMap<>();
 		hiddenRows = new ArrayList<>();
+		freeOrdinals = new ArrayDeque<>();
 		columns = new ArrayList<>();
 		allColumns = new ArrayList<>();
 		columnHeaderRows = new ArrayList<>();
@@ -140,9 +189,14 @@ public class GridModel<T> {
 		styleRegistry = new StyleRegistry<T>(grid);
 		selectionModel = new SelectionModel<T>(this);
 		sortModel = new SortModel<T>(this);
+		groupModel = new GroupModel<T>(this);
+		aggregateModel = new AggregateModel<T>(this);
+		footerModel = new FooterModel<T>(this);
 		filterModel = new FilterModel<T>(this);
+		textIndex = new TextIndex<T>(this);
 		rowNumberColumn = new Column(null);		
 		columnHeaderRow = new Row<T>(null);
+		footerRow = new Row<T>(null);
 		groupSelectorColumn = new Column(null);
 		groupSelectorColumn.setWidth(16);
 		rowProvider = new DefaultRowProvider<T>();
@@ -170,6 +224,7 @@ public class GridModel<T> {
 			//
 			fireChangeEvent();
 			fireRowCountChangedEvent();
+			commitChanges();
 		}		
 	}
 	
@@ -183,6 +238,7 @@ public class GridModel<T> {
 	
 	public void setGroupRenderStyle(final GroupRenderStyle groupRenderStyle) {
 		this.groupRenderStyle = groupRenderStyle;
+		sortModel.invalidateSortKeys();
 	}
 
 	public StyleRegistry<T> getStyleRegistry() {
@@ -200,6 +256,18 @@ public class GridModel<T> {
 	public FilterModel<T> getFilterModel() {
 		return filterModel;
 	}
+	
+	public GroupModel<T> getGroupModel() {
+		return groupModel;
+	}
+	
+	public AggregateModel<T> getAggregateModel() {
+		return aggregateModel;
+	}
+	
+	public FooterModel<T> getFooterModel() {
+		return footerModel;
+	}
 
 	public List<Column> getColumns() {
 		return columns;
@@ -217,6 +285,14 @@ public class GridModel<T> {
 		return columnHeaderRow;
 	}
 	
+	public Row<T> getFooterRow() {
+		return footerRow;
+	}
+	
+	public boolean isShowFooter() {
+		return footerModel.isShowFooter();
+	}
+	
 	public Column getRowNumberColumn() {
 		return rowNumberColumn;
 	}
@@ -245,38 +321,28 @@ public class GridModel<T> {
 	}
 
 	/**
-	 * The number of visible or hidden rows.
+	 * The number of visible or hidden rows. The parent rows are counted as rows join, leave, are shown and are hidden - so
+	 * this is O(1).
 	 */
 	public int getDetailedRowCount(final boolean visible, final RowCountScope scope) {
-
-		final Collection<Row<T>> rowsToCount = visible ? rows : hiddenRows;
+		final int rowCount = visible ? rows.size() : hiddenRows.size();
+		final int parentCount = visible ? (parentRowCount - hiddenParentRowCount) : hiddenParentRowCount;
+		
 		switch (scope) {
 			case ALL:
-				return rowsToCount.size();
+				return rowCount;
 
 			case CHILDREN:
-				int childCount = 0;
-				for (final Row<T> row : rowsToCount) {
-					if (!isParentRow(row)) {
-						childCount++;
-					}
-				}
-				return childCount;
+				return rowCount - parentCount;
 
 			case PARENTS:
-				int parentCount = 0;
-				for (final Row<T> row : rowsToCount) {
-					if (isParentRow(row)) {
-						parentCount++;
-					}
-				}
 				return parentCount;
 		}
 
 		return -1;
 	}
 
-	public List<Row<T>> getRows() {
+	public RowList<T> getRows() {
 		return rows;
 	}
 
@@ -304,12 +370,21 @@ public class GridModel<T> {
 		return rowsByElement;
 	}
 
+	public IGridLabelProvider<T> getLabelProvider() {
+		return labelProvider;
+	}
+
 	public void setLabelProvider(final IGridLabelProvider<T> labelProvider) {
 		this.labelProvider = labelProvider;
+		rows.markDirty(0, rows.size() - 1);
+		textIndex.rebuild();
 	}
 
 	public void setContentProvider(final IGridContentProvider<T> contentProvider) {
 		this.contentProvider = contentProvider;
+		groupModel.setContentProvider(contentProvider);
+		sortModel.invalidateSortKeys();
+		relinkRows();
 
 		//
 		// The mandatory filter needs the contentprovider.
@@ -317,6 +392,43 @@ public class GridModel<T> {
 		clearFilters();
 	}
 	
+	public BackgroundWorker<T> getBackgroundWorker() {
+		return backgroundWorker;
+	}
+	
+	public boolean isBackgroundSortAndFilter() {
+		return (backgroundWorker != null);
+	}
+	
+	/**
+	 * Sort and filter on a pool thread, swapping the results into the model on the display thread when they're ready. Any
+	 * pending work is discarded if this is switched off.
+	 */
+	public void setBackgroundSortAndFilter(final boolean backgroundSortAndFilter) {
+		if (backgroundWorker != null) {
+			backgroundWorker.dispose();
+			backgroundWorker = null;
+		}
+		
+		if (backgroundSortAndFilter) {
+			final Display display = grid.getDisplay();
+			backgroundWorker = new BackgroundWorker<T>(runnable -> display.asyncExec(() -> {
+				if (!grid.isDisposed()) {
+					runnable.run();
+				}
+			}));
+		}
+	}
+	
+	/**
+	 * Let any pending background work know the row has been moved by the display thread.
+	 */
+	private void touchRow(final Row<T> row) {
+		if (backgroundWorker != null) {
+			backgroundWorker.touch(row);
+		}
+	}
+	
 	public IRowProvider<T> getRowProvider() {
 		return rowProvider;
 	}
@@ -329,8 +441,31 @@ public class GridModel<T> {
 		filterModel.clear();
 	}
 
+	/**
+	 * The grid's content provider - with the GroupModel's groups if it's grouping.
+	 */
 	public IGridContentProvider<T> getContentProvider() {
-		return contentProvider;
+		return groupModel;
+	}
+	
+	public IGroupElementProvider<T> getGroupElementProvider() {
+		return groupModel.getGroupElementProvider();
+	}
+	
+	/**
+	 * Let the grid group the elements by the group-by columns, creating a parent element for each group with the provider.
+	 * If null, the content provider's groups are used.
+	 */
+	public void setGroupElementProvider(final IGroupElementProvider<T> groupElementProvider) {
+		if (groupElementProvider != groupModel.getGroupElementProvider()) {
+			groupModel.setGroupElementProvider(groupElementProvider);
+			regroup();
+			fireChangeEvent();
+		}
+	}
+	
+	public TextIndex<T> getTextIndex() {
+		return textIndex;
 	}
 
 	private void addColumn(final Column column) {
@@ -378,6 +513,7 @@ public class GridModel<T> {
 
 	private void removeColumn(final Column column) {
 		sortModel.removeColumn(column);
+		textIndex.removeColumn(column);
 		allColumns.remove(column);
 		columns.remove(column);
 		groupByColumns.remove(column);
@@ -385,11 +521,37 @@ public class GridModel<T> {
 	}
 
 	public void removeColumns(final List<Column> columns) {
+		final boolean groupByChanged = !Collections.disjoint(columns, groupByColumns);
+		boolean aggregatesChanged = false;
+		boolean footerChanged = false;
+		
 		for (final Column column : new ArrayList<>(columns)) {
+			if (aggregateModel.isAggregated(column)) {
+				aggregateModel.setAggregateType(column, null);
+				aggregatesChanged = true;
+			}
+			
+			if (footerModel.isAggregated(column)) {
+				footerModel.setAggregateType(column, null);
+				footerChanged = true;
+			}
+			
 			removeColumn(column);
 		}
+		
+		if (aggregatesChanged) {
+			aggregateModel.rebuild(new ArrayList<>(rowsByElement.keySet()));
+		}
+		
+		if (footerChanged) {
+			footerModel.rebuild(rows);
+		}
 
 		rebuildVisibleColumns();
+		
+		if (groupByChanged && (groupModel.getGroupElementProvider() != null)) {
+			regroup();
+		}
 
 		if (this.columns.isEmpty() && !columnHeaderRows.isEmpty()) {
 			columnHeaderRows.clear();
@@ -466,24 +628,42 @@ public class GridModel<T> {
 
 	/**
 	 * Returns the rows which are visible after the operation.
+	 * 
+	 * Each row is still filtered individually but, if enough of them are to be shown, they're sorted on their own and then 
+	 * merged into the visible rows in a single pass - rather than being inserted one by one.
 	 */
 	public Collection<Row<T>> addElements(final Collection<T> elements) {
+		beginChange();
 		int heightDelta = 0;
-		final Collection<Row<T>> rowsShown = new ArrayList<Row<T>>();
+		final List<Row<T>> rowsShown = new ArrayList<Row<T>>();
 		
 		for (final T element : elements) {
+			//
+			// Put the element in it's group, adding a row for the group if it's new.
+			//
+			final T groupElement = groupModel.add(element);
+			if (groupElement != null) {
+				heightDelta += addRow(groupElement, rowsShown);
+			}
+			
 			//
 			// Add a row for the element.
 			//
-			final Row<T> row = rowProvider.createRow(element);
-			row.setHeight(labelProvider.getDefaultRowHeight(element));
+			heightDelta += addRow(element, rowsShown);
+		}
+		
+		if (isMergeWorthwhile(rowsShown.size())) {
+			mergeRows(rowsShown);
 			
-			if (addRow(row)) {
-				heightDelta += getRowHeight(row);
-				rowsShown.add(row);
+		} else {
+			for (final Row<T> row : rowsShown) {
+				showRow(row);
 			}
 		}
 		
+		heightDelta += checkGroups();
+		heightDelta += updateAggregatedGroups();
+		
 		//
 		// Re-seed the row-indexes if there's been any move or show/hiding.
 		//
@@ -495,25 +675,217 @@ public class GridModel<T> {
 		
 		fireElementsAddedEvent(elements);		
 		fireRowCountChangedEvent();
+		endChange();
 		
 		return rowsShown;
 	}
+	
+	/**
+	 * Inserting a row costs O(log n) - merging costs O(n) for the whole batch. So merge if the batch is a sizeable fraction 
+	 * of the visible rows.
+	 */
+	private boolean isMergeWorthwhile(final int rowsToShow) {
+		return (rowsToShow >= MERGE_THRESHOLD) && (rowsToShow >= (rows.size() / MERGE_FRACTION));
+	}
+	
+	/**
+	 * Sort the new rows then merge them into the visible rows (which are already in order) in one pass. The result is
+	 * the same as showing each row in turn.
+	 */
+	private void mergeRows(final List<Row<T>> rowsToShow) {
+		final Comparator<Row<T>> comparator = sortModel.getRowComparator();
+		rowsToShow.sort(comparator);
+		
+		final Row<T>[] merged = RowList.newRowArray(rows.size() + rowsToShow.size());
+		final Iterator<Row<T>> existing = rows.iterator();
+		Row<T> existingRow = existing.hasNext() ? existing.next() : null;
+		int count = 0;
+		
+		for (final Row<T> row : rowsToShow) {
+			//
+			// Existing rows go first when equal - as a binary search insert would put the new row after them.
+			//
+			while ((existingRow != null) && (comparator.compare(existingRow, row) <= 0)) {
+				merged[count++] = existingRow;
+				existingRow = existing.hasNext() ? existing.next() : null;
+			}
+			
+			merged[count++] = row;
+			selectionModel.showRow(row);
+			row.setVisible(true);
+			footerModel.show(row);
+			touchRow(row);
+		}
+		
+		while (existingRow != null) {
+			merged[count++] = existingRow;
+			existingRow = existing.hasNext() ? existing.next() : null;
+		}
+		
+		rows.setRows(merged, count);
+	}
+	
+	private void setRows(final List<Row<T>> newRows) {
+		rows.setRows(newRows.toArray(RowList.<T>newRowArray(newRows.size())), newRows.size());
+	}
+
+	/**
+	 * Apply a batch of changes (removes, then adds, then updates) with a single re-index and repaint. The rows added and
+	 * updated are collected into rowsAdded and rowsUpdated.
+	 */
+	public void applyChanges(final Collection<T> removes, final Collection<T> adds, final Collection<T> updates, final Collection<Row<T>> rowsAdded, final Collection<Row<T>> rowsUpdated) {
+		enableEvents(false);
+		
+		try {
+			if (!removes.isEmpty()) {
+				removeElements(removes);
+			}
+			
+			if (!adds.isEmpty()) {
+				rowsAdded.addAll(addElements(adds));
+			}
+			
+			if (!updates.isEmpty()) {
+				rowsUpdated.addAll(updateElements(updates));
+			}
+			
+		} finally {
+			enableEvents(true);
+		}
+	}
+
+	/**
+	 * Replace all of the elements in the model in bulk.
+	 * 
+	 * The rows are created and sized in parallel (so the row provider and label provider must be thread-safe), as are the
+	 * filters which are thread-safe. The visible rows are sorted once and the row indexes are built in a single pass. 
+	 * Listeners are notified once at the end.
+	 */
+	@SuppressWarnings("unchecked")
+	public Collection<Row<T>> setElements(final Collection<T> elements) {
+		final T[] elementArray = (T[]) elements.toArray();
+		final Row<T>[] newRows = RowList.newRowArray(elementArray.length);
+		final boolean selectionChanged = !selectionModel.getSelectedElements().isEmpty();
+		
+		beginChange();
+		pendingChanges.reset();
+		selectionModel.clear(false);
+		rows.clear();
+		hiddenRows.clear();
+		rowsByElement.clear();
+		textIndex.clear();
+		footerModel.clear();
+		resetOrdinals();
+		resetParentRowCounts();
+		
+		//
+		// Create the rows (independently of one another) - the new rows take the ordinals in order.
+		//
+		IntStream.range(0, elementArray.length).parallel().forEach(index -> {
+			final Row<T> row = createRow(elementArray[index]);
+			row.setOrdinal(index);
+			newRows[index] = row;
+		});
+		
+		//
+		// Group the elements, adding a row for each group.
+		//
+		final List<T> groupElements = groupModel.regroup(Arrays.asList(elementArray));
+		final Row<T>[] allRows = Arrays.copyOf(newRows, newRows.length + groupElements.size());
+		
+		for (int index=0; index<groupElements.size(); index++) {
+			final Row<T> row = createRow(groupElements.get(index));
+			row.setOrdinal(newRows.length + index);
+			allRows[newRows.length + index] = row;
+		}
+		
+		nextOrdinal = allRows.length;
+		
+		for (final Row<T> row : allRows) {
+			putRow(row);
+			textIndex.put(row.getElement());
+		}
+		
+		aggregateModel.rebuild(Arrays.asList(elementArray));
+		
+		//
+		// Filter every row (in parallel where the filters are thread-safe), then split them into visible and hidden rows.
+		//
+		final boolean[] matches = filterModel.match(allRows);
+		final Row<T>[] visibleRows = RowList.newRowArray(allRows.length);
+		int visibleCount = 0;
+		
+		for (int index=0; index<allRows.length; index++) {
+			final Row<T> row = allRows[index];
+			
+			if (matches[index]) {
+				row.setVisible(true);
+				footerModel.show(row);
+				visibleRows[visibleCount++] = row;
+				
+			} else {
+				row.setVisible(false);
+				addHiddenRow(row);
+			}
+		}
+		
+		//
+		// Sort the visible rows once, then build the row tree from them.
+		//
+		sortModel.sortRows(visibleRows, visibleCount);
+		rows.setRows(visibleRows, visibleCount);
+		reindex();
+		
+		fireElementsAddedEvent(elements);
+		fireRowCountChangedEvent();
+		fireChangeEvent();
+		
+		if (selectionChanged) {
+			fireSelectionChangedEvent();
+		}
+		
+		endChange();
+		return Arrays.asList(visibleRows).subList(0, visibleCount);
+	}
 
+	private Row<T> createRow(final T element) {
+		final Row<T> row = rowProvider.createRow(element);
+		row.setHeight(labelProvider.getDefaultRowHeight(element));
+		row.setSelectionModel(selectionModel);
+		return row;
+	}
+	
+	/**
+	 * Add a row for the element. If it should be shown, it's added to the rows to show and it's height is returned.
+	 */
+	private int addRow(final T element, final List<Row<T>> rowsToShow) {
+		final Row<T> row = createRow(element);
+		
+		if (addRow(row)) {
+			rowsToShow.add(row);
+			return getRowHeight(row);
+		}
+		
+		return 0;
+	}
+	
+	/**
+	 * Cache the row and hide it if it's filtered out. Returns true if it should be shown - which is left to the caller.
+	 */
 	private boolean addRow(final Row<T> row) {
 
 		//
 		// Cache the row by it's domain element.
 		//
-		rowsByElement.put(row.getElement(), row);
+		putRow(row);
+		textIndex.put(row.getElement());
+		aggregateModel.add(row.getElement());
+		assignOrdinal(row);
 		
 		//
 		// Check the filter model.
 		//
 		if (filterModel.match(row)) {
-			//
-			// Make the row visible.
-			//
-			showRow(row);
 			return true;
 
 		} else {
@@ -524,29 +896,32 @@ public class GridModel<T> {
 	}
 
 	public void removeElements(final Collection<T> elements) {
+		beginChange();
 		int heightDelta = 0;
 		int lastSelectedIndex = -1;
 		boolean selectionChanged = false;
 		
 		for (final T element : elements) {
 			final Row<T> row = rowsByElement.get(element);
-			if (row != null) {
+			
+			//
+			// The rows of the GroupModel's groups are removed with their last child.
+			//
+			if ((row != null) && !groupModel.isGroupElement(element)) {
 				heightDelta -= getRowHeight(row);
-				rows.remove(row);
-				hiddenRows.remove(row);
-				rowsByElement.remove(element);
-	
+				
 				if (row.isSelected()) {
-					selectionChanged |= selectionModel.removeRow(row);
 					lastSelectedIndex = Math.max(lastSelectedIndex, row.getRowIndex());
 				}
-	
-				if (row.isPinned()) {
-					columnHeaderRows.remove(row);
-				}
+				
+				groupModel.remove(element);
+				selectionChanged |= removeRow(row);
 			}
 		}
 		
+		heightDelta += checkGroups();
+		heightDelta += updateAggregatedGroups();
+		
 		//
 		// If there WAS a selection and now there is NONE then select the row or group AFTER the last 
 		// previously selected row or group.
@@ -585,6 +960,34 @@ public class GridModel<T> {
 		if (selectionChanged) {
 			fireSelectionChangedEvent();
 		}
+		
+		endChange();
+	}
+	
+	/**
+	 * Remove the row from the model. Returns true if it was selected.
+	 */
+	private boolean removeRow(final Row<T> row) {
+		rows.remove(row);
+		final boolean selected = selectionModel.removeRow(row);
+		removeHiddenRow(row);
+		rowsByElement.remove(row.getElement());
+		textIndex.remove(row.getElement());
+		
+		if (row.isParentRow()) {
+			parentRowCount--;
+		}
+		
+		unlinkRow(row);
+		aggregateModel.remove(row.getElement());
+		footerModel.hide(row);
+		releaseOrdinal(row);
+		
+		if (row.isPinned()) {
+			columnHeaderRows.remove(row);
+		}
+		
+		return selected;
 	}
 	
 	/**
@@ -612,49 +1015,204 @@ public class GridModel<T> {
 
 	/**
 	 * Returns the rows which are visible after the operation.
+	 * 
+	 * Small batches move each updated row in turn, large batches (relative to the number of visible rows) merge all
+	 * of the updated rows back in one go.
 	 */
 	public Collection<Row<T>> updateElements(final Collection<T> elements) {
-		int heightDelta = 0;
+		beginChange();
 		final Collection<Row<T>> rowsShown = new ArrayList<Row<T>>();
+		int heightDelta = regroupElements(elements);
 		
-		for (T element : elements) {
+		for (final T element : elements) {
+			if (rowsByElement.containsKey(element)) {
+				aggregateModel.update(element);
+			}
+		}
+		
+		heightDelta += isMergeWorthwhile(elements.size()) ? updateRowsInBatch(elements, rowsShown) : updateRows(elements, rowsShown);
+		heightDelta += checkGroups();
+		heightDelta += updateAggregatedGroups();
+		
+		//
+		// Reseed the row-indexes if there's been any move or show/hiding.
+		//
+		reindex();
+
+		//
+		// If the height of the rows has changed, adjust the grid's scroll-bars.
+		//
+		if (heightDelta != 0) {
+			fireHeightChangeEvent(heightDelta);
+			fireRowCountChangedEvent();
+		}
+		fireElementsUpdatedEvent(elements);
+		fireChangeEvent();
+		endChange();
+
+		return rowsShown;
+	}
+	
+	/**
+	 * Move any elements whose group-by values have changed into their new groups - showing the rows of any new groups - 
+	 * and re-link the updated rows to their parents and children, which may have changed.
+	 * 
+	 * The change in total row heights is returned.
+	 */
+	private int regroupElements(final Collection<T> elements) {
+		int heightDelta = 0;
+		final List<Row<T>> rowsToShow = new ArrayList<>();
+		
+		for (final T element : elements) {
 			final Row<T> row = rowsByElement.get(element);
-						
+			
 			if (row != null) {
-				//
-				// Should the row be shown/hidden?
-				//
-				final boolean visible = filterModel.match(row);
-				
-				if (visible) {
-					rowsShown.add(row);
+				if (groupModel.isGrouping()) {
+					final T groupElement = groupModel.update(row.getElement());
+					
+					if (groupElement != null) {
+						heightDelta += addRow(groupElement, rowsToShow);
+					}
 				}
 				
-				if (visible && row.isVisible()) {
-					//
-					// Should the row move?
-					//
-					final int expectedIndex = sortModel.getSortedRowIndex(row);
-					final Row<T> rowAtIndex = expectedIndex < rows.size() ? rows.get(expectedIndex) : null /* We need to add to the list here */;
-					
-					if (row != rowAtIndex) {
-						if (isParentRow(row)) {
-							//
-							// Move the row to the correct position.
-							//
-							moveRow(row);
-
-							//
-							// If this was a group row that has moved, bring all the children with it.
-							//
-							moveVisibleChildren(row);
-							
-						} else if (isChildElement(row.getElement())) {
+				linkRow(row);
+			}
+		}
+		
+		for (final Row<T> row : rowsToShow) {
+			showRow(row);
+		}
+		
+		return heightDelta;
+	}
+	
+	/**
+	 * Once elements have joined or left the GroupModel's groups, remove the rows of the groups which are now empty and 
+	 * check the visibility of the others - as a group can be shown or hidden by it's children. 
+	 * 
+	 * The change in total row heights is returned.
+	 */
+	private int checkGroups() {
+		int heightDelta = 0;
+		
+		for (final T groupElement : groupModel.takeChangedGroups()) {
+			final Row<T> groupRow = rowsByElement.get(groupElement);
+			
+			if (groupRow == null) {
+				continue;
+			}
+			
+			if (!groupModel.isGroupElement(groupElement)) {
+				heightDelta -= groupRow.isVisible() ? getRowHeight(groupRow) : 0;
+				removeRow(groupRow);
+				
+			} else {
+				filterModel.invalidate(groupRow);
+				heightDelta += checkRowVisibility(groupRow);
+			}
+		}
+		
+		return heightDelta;
+	}
+	
+	/**
+	 * Once the children of groups have been added, updated or removed, update the parent rows of the groups whose aggregates
+	 * have actually changed - re-sorting, re-filtering and repainting them. A parent is a child of any group above it, so
+	 * the changes are rolled up until no more groups change.
+	 * 
+	 * The change in total row heights is returned.
+	 */
+	private int updateAggregatedGroups() {
+		int heightDelta = 0;
+		List<T> groupElements = aggregateModel.takeChangedGroups();
+		
+		while (!groupElements.isEmpty()) {
+			final List<T> elementsToUpdate = new ArrayList<>(groupElements);
+			
+			for (final T groupElement : groupElements) {
+				aggregateModel.update(groupElement);
+				
+				final List<T> childElements = rowsByElement.containsKey(groupElement) ? null : groupModel.getChildren(groupElement);
+				
+				if (childElements != null) {
+					//
+					// The parent has no row, so it's children's sort keys hold their own copy of it's values - move the
+					// children instead.
+					//
+					sortModel.invalidateSortKeys();
+					elementsToUpdate.addAll(childElements);
+				}
+			}
+			
+			final Collection<Row<T>> rowsShown = new ArrayList<>();
+			heightDelta += isMergeWorthwhile(elementsToUpdate.size()) ? updateRowsInBatch(elementsToUpdate, rowsShown) : updateRows(elementsToUpdate, rowsShown);
+			groupElements = aggregateModel.takeChangedGroups();
+		}
+		
+		return heightDelta;
+	}
+	
+	/**
+	 * Update the rows one at a time - moving each row (and any visible children) to where it now belongs.
+	 * 
+	 * The change in total row heights is returned.
+	 */
+	private int updateRows(final Collection<T> elements, final Collection<Row<T>> rowsShown) {
+		int heightDelta = 0;
+		
+		for (T element : elements) {
+			final Row<T> row = rowsByElement.get(element);
+						
+			if (row != null) {
+				//
+				// The row's cached sort values are now out-of-date.
+				//
+				sortModel.invalidateSortKey(row);
+				filterModel.invalidate(row);
+				textIndex.put(element);
+				footerModel.update(row);
+				touchRow(row);
+				
+				//
+				// Should the row be shown/hidden?
+				//
+				final boolean visible = filterModel.match(row);
+				
+				if (visible) {
+					rowsShown.add(row);
+				}
+				
+				if (visible && row.isVisible()) {
+					//
+					// Should the row move?
+					//
+					final int expectedIndex = sortModel.getSortedRowIndex(row);
+					final Row<T> rowAtIndex = expectedIndex < rows.size() ? rows.get(expectedIndex) : null /* We need to add to the list here */;
+					
+					if (row != rowAtIndex) {
+						if (isParentRow(row)) {
+							//
+							// Move the row to the correct position.
+							//
+							moveRow(row);
+
+							//
+							// If this was a group row that has moved, bring all the children with it.
+							//
+							moveVisibleChildren(row);
+							
+						} else if (isChildElement(row.getElement())) {
 							//
 							// Move the child row within it's group.
 							//
 							final Row<T> parentRow = getRow(getParentOrOwnElement(row));
-							moveVisibleChildren(parentRow);
+							
+							if ((parentRow != null) && parentRow.isVisible()) {
+								moveVisibleChildren(parentRow);
+								
+							} else {
+								moveRow(row);
+							}
 							
 						} else {
 							//
@@ -669,6 +1227,12 @@ public class GridModel<T> {
 					//				
 					heightDelta += getUpdatedRowHeightDelta(row);
 					
+					//
+					// The row's new values may alter it's (and the next row's) alternate background.
+					//
+					final int rowIndex = row.getRowIndex();
+					rows.markDirty(rowIndex, rowIndex + 1);
+					
 				} else if (visible && !row.isVisible()) {
 					//
 					// Reveal the row.
@@ -713,22 +1277,107 @@ public class GridModel<T> {
 			}
 		}
 		
+		return heightDelta;
+	}
+	
+	/**
+	 * Update a large batch of rows. Rather than moving each row in turn, every visible row which may have moved (the 
+	 * updated rows and the visible children of updated parents) is pulled out of the visible rows in one pass, then they're
+	 * sorted and merged back in.
+	 * 
+	 * The change in total row heights is returned.
+	 */
+	private int updateRowsInBatch(final Collection<T> elements, final Collection<Row<T>> rowsShown) {
+		int heightDelta = 0;
+		final Set<Row<T>> rowsToMerge = Collections.newSetFromMap(new IdentityHashMap<Row<T>, Boolean>());
+		final List<Row<T>> rowsToCheckGroup = new ArrayList<>();
+		
+		for (final T element : elements) {
+			final Row<T> row = rowsByElement.get(element);
+			
+			if (row != null) {
+				//
+				// The row's cached sort values are now out-of-date.
+				//
+				sortModel.invalidateSortKey(row);
+				filterModel.invalidate(row);
+				textIndex.put(element);
+				footerModel.update(row);
+				touchRow(row);
+				
+				final boolean visible = filterModel.match(row);
+				
+				if (visible) {
+					rowsShown.add(row);
+				}
+				
+				if (visible && row.isVisible()) {
+					heightDelta += getUpdatedRowHeightDelta(row);
+					rowsToMerge.add(row);
+					
+					if (isParentRow(row)) {
+						rowsToMerge.addAll(getVisibleChildren(row));
+					}
+					
+				} else if (visible && !row.isVisible()) {
+					//
+					// Reveal the row when the others are merged in.
+					//
+					removeHiddenRow(row);
+					selectionModel.showRow(row);
+					row.setVisible(true);
+					footerModel.show(row);
+					heightDelta += getRowHeight(row);
+					rowsToMerge.add(row);
+					rowsToCheckGroup.add(row);
+					
+				} else if (!visible && row.isVisible()) {
+					heightDelta -= getRowHeight(row);
+					hideRow(row);
+					rowsToCheckGroup.add(row);
+				}
+			}
+		}
+		
 		//
-		// Reseed the row-indexes if there's been any move or show/hiding.
+		// Pull the rows which may have moved out of the visible rows - leaving them in order.
 		//
-		reindex();
-
+		if (!rowsToMerge.isEmpty()) {
+			final List<Row<T>> remainingRows = new ArrayList<>(rows.size());
+			for (final Row<T> row : rows) {
+				if (!rowsToMerge.contains(row)) {
+					remainingRows.add(row);
+				}
+			}
+			
+			setRows(remainingRows);
+		}
+		
 		//
-		// If the height of the rows has changed, adjust the grid's scroll-bars.
+		// Show/hide any parents or children of rows which have been shown/hidden.
 		//
-		if (heightDelta != 0) {
-			fireHeightChangeEvent(heightDelta);
-			fireRowCountChangedEvent();
+		for (final Row<T> row : rowsToCheckGroup) {
+			if (isParentElement(row.getElement())) {
+				heightDelta += checkChildVisibility(row);
+				
+			} else if (isChildElement(row.getElement())) {
+				heightDelta += checkParentVisibility(row);
+			}
 		}
-		fireElementsUpdatedEvent(elements);
-		fireChangeEvent();
-
-		return rowsShown;
+		
+		//
+		// Merge the rows back in - unless the checks above have hidden or already re-inserted them.
+		//
+		final List<Row<T>> rowsToInsert = new ArrayList<>(rowsToMerge.size());
+		for (final Row<T> row : rowsToMerge) {
+			if (row.isVisible() && !rows.contains(row)) {
+				rowsToInsert.add(row);
+			}
+		}
+		
+		mergeRows(rowsToInsert);
+		
+		return heightDelta;
 	}
 	
 	/**
@@ -738,6 +1387,10 @@ public class GridModel<T> {
 		final List<Row<T>> children = getVisibleChildren(parentRow);
 		children.sort(sortModel.getRowComparator());
 		rows.removeAll(children);
+		
+		for (final Row<T> child : children) {
+			touchRow(child);
+		}
 
 		//
 		// We can't use the cached index as we're potentially in a loop of row's being shuffled around.
@@ -753,7 +1406,6 @@ public class GridModel<T> {
 		
 		final int newConcreatedIndex = sortModel.getSortedRowIndex(row);
 		rows.add(newConcreatedIndex, row);
-		row.setRowIndex(newConcreatedIndex);
 	}
 
 	/**
@@ -823,21 +1475,33 @@ public class GridModel<T> {
 		return heightDelta;
 	}
 	
+	/**
+	 * Row indexes are maintained by the RowList and hidden row indexes as rows are hidden/shown, but the alternate 
+	 * background is seeded here.
+	 * 
+	 * Only the rows modified since the last reindex are re-seeded, continuing past them until a row's alternate
+	 * background is unchanged - as every row after that will also be unchanged.
+	 */
 	public void reindex() {
-		int rowIndex = 0;
-		for (Row<T> row : rows) {
-			row.setRowIndex(rowIndex++);
+		if (rows.isDirty()) {
+			final int dirtyFrom = rows.getDirtyFrom();
+			final int dirtyTo = rows.getDirtyTo();
+			final Iterator<Row<T>> iterator = rows.iterator(dirtyFrom);
+			Row<T> previousRow = (dirtyFrom == 0) ? null : rows.get(dirtyFrom - 1);
 			
-			if (rowIndex == 1) {
-				row.setAlternateBackground(false);
-			} else {
-				row.setAlternateBackground(labelProvider.shouldAlternateBackground(rows.get(rowIndex-2), row));
+			for (int index = dirtyFrom; iterator.hasNext(); index++) {
+				final Row<T> row = iterator.next();
+				final boolean alternateBackground = (previousRow == null) ? false : labelProvider.shouldAlternateBackground(previousRow, row);
+				
+				if ((index > dirtyTo) && (alternateBackground == row.isAlternateBackground())) {
+					break;
+				}
+				
+				row.setAlternateBackground(alternateBackground);
+				previousRow = row;
 			}
-		}
-		
-		rowIndex = 0;
-		for (Row<T> row : hiddenRows) {
-			row.setHiddenRowIndex(rowIndex++);
+			
+			rows.clearDirtyRange();
 		}
 		
 		if (logger.isTraceEnabled()) {
@@ -854,6 +1518,9 @@ public class GridModel<T> {
 	}
 
 	public void clearElements() {
+		beginChange();
+		pendingChanges.reset();
+		
 		//
 		// Clear all selections.
 		//
@@ -865,8 +1532,177 @@ public class GridModel<T> {
 		rows.clear();
 		hiddenRows.clear();
 		rowsByElement.clear();
+		textIndex.clear();
+		groupModel.clear();
+		resetParentRowCounts();
+		aggregateModel.clear();
+		footerModel.clear();
+		resetOrdinals();
 
 		fireChangeEvent();
+		endChange();
+	}
+	
+	/**
+	 * Give a row joining the model an ordinal - re-using one from a removed row if possible. Any filter results held for
+	 * a previous row with the ordinal are discarded.
+	 */
+	private void assignOrdinal(final Row<T> row) {
+		row.setOrdinal(freeOrdinals.isEmpty() ? nextOrdinal++ : freeOrdinals.pop());
+		filterModel.invalidate(row);
+	}
+	
+	private void releaseOrdinal(final Row<T> row) {
+		if (row.getOrdinal() != -1) {
+			freeOrdinals.push(row.getOrdinal());
+			row.setOrdinal(-1);
+			row.setSelectionModel(null);
+		}
+	}
+	
+	/**
+	 * Cache the row by it's element and link it into it's group.
+	 */
+	private void putRow(final Row<T> row) {
+		rowsByElement.put(row.getElement(), row);
+		linkRow(row);
+	}
+	
+	/**
+	 * Cache the row's place in it's group on the row - it's child rows (if it's a parent) and it's parent row. These are
+	 * only refreshed as rows join and leave the model and as elements are regrouped, so the structure of the groups can be
+	 * followed without going back to the content provider.
+	 */
+	private void linkRow(final Row<T> row) {
+		final List<T> childElements = groupModel.getChildren(row.getElement());
+		setParentRow(row, childElements != null);
+		
+		if (childElements != null) {
+			for (final T childElement : childElements) {
+				final Row<T> childRow = rowsByElement.get(childElement);
+				
+				if (childRow != null) {
+					setParent(childRow, row);
+				}
+			}
+		}
+		
+		linkParent(row);
+	}
+	
+	/**
+	 * Link the row to it's parent's row - if the element has changed group.
+	 */
+	private void linkParent(final Row<T> row) {
+		final T parentElement = groupModel.getParent(row.getElement());
+		final Row<T> parentRow = (parentElement == null) ? null : rowsByElement.get(parentElement);
+		
+		if (parentRow != row.getParent()) {
+			setParent(row, parentRow);
+		}
+	}
+	
+	private void setParent(final Row<T> row, final Row<T> parentRow) {
+		if (row.getParent() != null) {
+			row.getParent().removeChild(row);
+		}
+		
+		row.setParent(parentRow);
+		
+		if (parentRow != null) {
+			//
+			// The parent may have joined the model before it had any children.
+			//
+			setParentRow(parentRow, true);
+			parentRow.addChild(row);
+		}
+	}
+	
+	/**
+	 * Make the row a parent (with no child rows yet) or not, keeping the parent row counts if the row is in the model. A
+	 * visible row's values leave the footer as it becomes a parent and return as it stops being one.
+	 */
+	private void setParentRow(final Row<T> row, final boolean parentRow) {
+		if (row.isParentRow() == parentRow) {
+			return;
+		}
+		
+		if (row.isParentRow()) {
+			for (final Row<T> childRow : row.getChildren()) {
+				childRow.setParent(null);
+			}
+		}
+		
+		row.setParentRow(parentRow);
+		
+		if (rowsByElement.get(row.getElement()) == row) {
+			final int delta = parentRow ? 1 : -1;
+			parentRowCount += delta;
+			
+			if (isHiddenRow(row)) {
+				hiddenParentRowCount += delta;
+			}
+			
+			if (row.isVisible()) {
+				if (parentRow) {
+					footerModel.hide(row);
+					
+				} else {
+					footerModel.show(row);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Unlink a row leaving the model from it's parent and children.
+	 */
+	private void unlinkRow(final Row<T> row) {
+		setParent(row, null);
+		
+		if (row.isParentRow()) {
+			for (final Row<T> childRow : row.getChildren()) {
+				childRow.setParent(null);
+			}
+			
+			row.clearChildren();
+		}
+	}
+	
+	/**
+	 * Link every row into it's group again and recount the parent rows - the structure of every group may have changed.
+	 */
+	private void relinkRows() {
+		for (final Row<T> row : rowsByElement.values()) {
+			row.setParent(null);
+			row.setParentRow(false);
+		}
+		
+		resetParentRowCounts();
+		
+		for (final Row<T> row : rowsByElement.values()) {
+			linkRow(row);
+		}
+		
+		//
+		// The rows were all reset to leaves above - so former parents which are still leaves go back into the footer.
+		//
+		for (final Row<T> row : rowsByElement.values()) {
+			if (row.isVisible() && !row.isParentRow()) {
+				footerModel.show(row);
+			}
+		}
+	}
+	
+	private void resetParentRowCounts() {
+		parentRowCount = 0;
+		hiddenParentRowCount = 0;
+	}
+	
+	private void resetOrdinals() {
+		nextOrdinal = 0;
+		freeOrdinals.clear();
+		filterModel.discardResults();
 	}
 	
 	public void showRow(final Row<T> row) {
@@ -874,23 +1710,24 @@ public class GridModel<T> {
 	}
 	
 	public void showRow(final Row<T> row, final boolean removeFromOppsosite) {
+		touchRow(row);
+		
 		final int insertIndex = sortModel.getSortedRowIndex(row);
 
 		if (insertIndex >= 0) {			
 			rows.add(insertIndex, row);
-			row.setRowIndex(insertIndex);
 			
 		} else {
 			rows.add(row);
-			row.setRowIndex(rows.size()-1);
 		}
 
 		if (removeFromOppsosite) {
-			hiddenRows.remove(row);
-			row.setHiddenRowIndex(-1);
+			removeHiddenRow(row);
 		}
 		
+		selectionModel.showRow(row);
 		row.setVisible(true);
+		footerModel.show(row);
 		
 		if (logger.isTraceEnabled()) {
 			logger.trace("Element {} shown at {}", getElementId(row), row.getRowIndex());
@@ -902,26 +1739,111 @@ public class GridModel<T> {
 	}
 	
 	public void hideRow(final Row<T> row, final boolean removeFromOppsosite) {
+		touchRow(row);
+		
 		if (removeFromOppsosite) {
 			rows.remove(row);
-			row.setRowIndex(-1);
 		}
 		
-		if (row.isSelected()) {
-			selectionModel.removeRow(row);
-		}
+		selectionModel.removeRow(row);
 				
-		hiddenRows.add(row);
-		row.setHiddenRowIndex(hiddenRows.size()-1);
+		addHiddenRow(row);
 		row.setVisible(false);
+		footerModel.hide(row);
 		
 		if (logger.isTraceEnabled()) {
 			logger.trace("Element {} hidden", getElementId(row));
 		}
 	}
 
+	/**
+	 * Append the row to the (unordered) hidden rows.
+	 */
+	private void addHiddenRow(final Row<T> row) {
+		row.setHiddenRowIndex(hiddenRows.size());
+		hiddenRows.add(row);
+		
+		if (row.isParentRow()) {
+			hiddenParentRowCount++;
+		}
+	}
+	
+	/**
+	 * Remove the row from the hidden rows in constant time, by moving the last hidden row into it's slot.
+	 */
+	private void removeHiddenRow(final Row<T> row) {
+		if (!isHiddenRow(row)) {
+			return;
+		}
+		
+		final int hiddenRowIndex = row.getHiddenRowIndex();
+		final Row<T> lastRow = hiddenRows.remove(hiddenRows.size() - 1);
+		
+		if (row.isParentRow()) {
+			hiddenParentRowCount--;
+		}
+		
+		if (lastRow != row) {
+			hiddenRows.set(hiddenRowIndex, lastRow);
+			lastRow.setHiddenRowIndex(hiddenRowIndex);
+		}
+		
+		row.setHiddenRowIndex(-1);
+	}
+	
+	private boolean isHiddenRow(final Row<T> row) {
+		final int hiddenRowIndex = row.getHiddenRowIndex();
+		return (hiddenRowIndex >= 0) && (hiddenRowIndex < hiddenRows.size()) && (hiddenRows.get(hiddenRowIndex) == row);
+	}
+
+	/**
+	 * Show the aggregate of each group's children in the column of the group's parent row (or stop if the type is null). 
+	 * The aggregates are built from scratch, then the parent rows are re-sorted and re-filtered.
+	 */
+	public void setAggregateType(final Column column, final AggregateType type) {
+		if (aggregateModel.getAggregateType(column) == type) {
+			return;
+		}
+		
+		aggregateModel.setAggregateType(column, type);
+		aggregateModel.rebuild(new ArrayList<>(rowsByElement.keySet()));
+		sortModel.invalidateSortKeys();
+		
+		final List<T> parentElements = new ArrayList<>();
+		for (final T element : rowsByElement.keySet()) {
+			if (isParentElement(element)) {
+				parentElements.add(element);
+			}
+		}
+		
+		final int heightDelta = updateRows(parentElements, new ArrayList<Row<T>>());
+		reindex();
+		
+		if (heightDelta != 0) {
+			fireHeightChangeEvent(heightDelta);
+			fireRowCountChangedEvent();
+		}
+		
+		fireChangeEvent();
+	}
+
+	/**
+	 * Show the aggregate of the visible rows in the column's footer cell (or stop if the type is null). The footer is only
+	 * built from the visible rows here - after that it's kept up-to-date as rows are shown, hidden and updated.
+	 */
+	public void setFooterAggregateType(final Column column, final AggregateType type) {
+		if (footerModel.getAggregateType(column) == type) {
+			return;
+		}
+		
+		footerModel.setAggregateType(column, type);
+		footerModel.rebuild(rows);
+		fireChangeEvent();
+	}
+
 	public void groupBy(final List<Column> columns) {
 		groupByColumns.addAll(columns);
+		sortModel.invalidateSortKeys();
 
 		//
 		// Hide the columns.
@@ -931,6 +1853,11 @@ public class GridModel<T> {
 		}
 
 		rebuildVisibleColumns();
+		
+		if (groupModel.getGroupElementProvider() != null) {
+			regroup();
+		}
+		
 		fireChangeEvent();
 	}
 
@@ -942,8 +1869,14 @@ public class GridModel<T> {
 			column.setVisible(true);
 		}
 		
-		groupByColumns.removeAll(columns);		
+		groupByColumns.removeAll(columns);
+		sortModel.invalidateSortKeys();
 		rebuildVisibleColumns();
+		
+		if (groupModel.getGroupElementProvider() != null) {
+			regroup();
+		}
+		
 		fireChangeEvent();
 	}
 
@@ -960,8 +1893,81 @@ public class GridModel<T> {
 		// Rebuild the model's groups
 		//
 		groupByColumns.clear();
+		sortModel.invalidateSortKeys();
+		
+		if (groupModel.getGroupElementProvider() != null) {
+			regroup();
+		}
+		
 		fireChangeEvent();
 	}
+	
+	/**
+	 * Discard the GroupModel's groups (and their rows) and group every element again - the group-by columns have changed.
+	 * As any row may have joined or left a group, every row is filtered again and the visible rows are re-sorted.
+	 */
+	private void regroup() {
+		boolean selectionChanged = false;
+		
+		for (final T groupElement : new ArrayList<>(groupModel.getGroupElements())) {
+			selectionChanged |= removeRow(rowsByElement.get(groupElement));
+		}
+		
+		for (final T groupElement : groupModel.regroup(new ArrayList<>(rowsByElement.keySet()))) {
+			final Row<T> row = createRow(groupElement);
+			rowsByElement.put(groupElement, row);
+			textIndex.put(groupElement);
+			assignOrdinal(row);
+		}
+		
+		relinkRows();
+		
+		aggregateModel.rebuild(new ArrayList<>(rowsByElement.keySet()));
+		
+		//
+		// Filter every row, then sort the visible rows and build the row tree from them.
+		//
+		final Row<T>[] allRows = rowsByElement.values().toArray(RowList.<T>newRowArray(rowsByElement.size()));
+		final Row<T>[] visibleRows = RowList.newRowArray(allRows.length);
+		int visibleCount = 0;
+		
+		rows.clear();
+		hiddenRows.clear();
+		hiddenParentRowCount = 0;
+		footerModel.clear();
+		sortModel.invalidateSortKeys();
+		filterModel.discardResults();
+		
+		final boolean[] matches = filterModel.match(allRows);
+		
+		for (int index=0; index<allRows.length; index++) {
+			final Row<T> row = allRows[index];
+			touchRow(row);
+			
+			if (matches[index]) {
+				selectionModel.showRow(row);
+				row.setVisible(true);
+				footerModel.show(row);
+				visibleRows[visibleCount++] = row;
+				
+			} else {
+				selectionChanged |= selectionModel.removeRow(row);
+				
+				row.setVisible(false);
+				addHiddenRow(row);
+			}
+		}
+		
+		sortModel.sortRows(visibleRows, visibleCount);
+		rows.setRows(visibleRows, visibleCount);
+		reindex();
+		
+		fireRowCountChangedEvent();
+		
+		if (selectionChanged) {
+			fireSelectionChangedEvent();
+		}
+	}
 
 	public void addListener(final IModelListener<T> listener) {
 		listeners.add(listener);
@@ -999,26 +2005,70 @@ public class GridModel<T> {
 	}
 	
 	public void fireElementsAddedEvent(final Collection<T> elements) {
+		pendingChanges.added(elements);
+		
 		for (final IModelListener<T> listener : listeners) {
 			listener.elementsAdded(elements);
 		}
 	}
 	
 	public void fireElementsUpdatedEvent(final Collection<T> elements) {
+		pendingChanges.updated(elements);
+		
 		for (final IModelListener<T> listener : listeners) {
 			listener.elementsUpdated(elements);
 		}
 	}
 	
 	public void fireElementsRemovedEvent(final Collection<T> elements) {
+		pendingChanges.removed(elements);
+		
 		for (final IModelListener<T> listener : listeners) {
 			listener.elementsRemoved(elements);
 		}
 	}
 	
 	public void fireSelectionChangedEvent() {
+		final SelectionChange<T> change = selectionModel.takeChange();
+		
 		for (final IModelListener<T> listener : listeners) {
-			listener.selectionChanged();
+			listener.selectionChanged(change);
+		}
+		
+		if (!change.isEmpty()) {
+			pendingChanges.selectionChanged(change);
+		}
+		
+		commitChanges();
+	}
+	
+	/**
+	 * Start a change - the changes made are committed to listeners in one change set when the outermost change ends.
+	 */
+	public void beginChange() {
+		changeDepth++;
+	}
+	
+	public void endChange() {
+		if (--changeDepth < 0) {
+			throw new IllegalArgumentException("Change depth already " + changeDepth);
+		}
+		
+		commitChanges();
+	}
+	
+	/**
+	 * Tell listeners of the changes made since they were last told - unless a change is still in progress or events are
+	 * suppressed, in which case they're told later.
+	 */
+	private void commitChanges() {
+		if ((changeDepth == 0) && !isEventsSuppressed() && !pendingChanges.isEmpty()) {
+			final ChangeSet<T> changes = pendingChanges;
+			pendingChanges = new ChangeSet<>();
+			
+			for (final IModelListener<T> listener : listeners) {
+				listener.changesCommitted(changes);
+			}
 		}
 	}
 	
@@ -1139,6 +2189,9 @@ public class GridModel<T> {
 		if (row == columnHeaderRow) {
 			cellStyle = styleRegistry.getHeaderStyle();
 
+		} else if (row == footerRow) {
+			cellStyle = styleRegistry.getFooterStyle();
+
 		} else if (isParentRow(row)) {
 			cellStyle = styleRegistry.getGroupValueStyle();
 		}
@@ -1150,53 +2203,50 @@ public class GridModel<T> {
 	 * Indicates if the row is in a group. Either if it has a parent, or if it has children (or could have children).
 	 */
 	public boolean isGroupRow(final Row<T> row) {
-		if (row.getElement() != null) {
-			//
-			// The row has a parent.
-			//
-			if (contentProvider.getParent(row.getElement()) != null) {
-				return true;
-			}
-
-			//
-			// The row has (or could have) children.
-			//
-			if (isParentRow(row)) {
-				return true;
-			}
-		}
-
-		return false;
+		return (row.getParent() != null) || row.isParentRow();
 	}
 
 	/**
 	 * If the row has a child list (even if it's empty) it's a parent row.
 	 */
 	public boolean isParentRow(final Row<T> row) {
-		return isParentElement(row.getElement());
+		return row.isParentRow();
 	}
 
 	/**
-	 * If the row has a child list (even if it's empty) it's a parent row.
+	 * If the element has a child list (even if it's empty) it's a parent. The element's row is used if it has one.
 	 */
 	public boolean isParentElement(final T element) {
-		return ((element != null) && (contentProvider.getChildren(element) != null));
+		if (element == null) {
+			return false;
+		}
+		
+		final Row<T> row = rowsByElement.get(element);
+		return (row == null) ? (groupModel.getChildren(element) != null) : row.isParentRow();
 	}
 
 	public boolean isChildElement(final T element) {
-		return (contentProvider.getParent(element) != null);
+		return (getParentElement(element) != null);
 	}
 
+	/**
+	 * The element's parent - from the element's row if it has one.
+	 */
 	public T getParentElement(final T element) {
-		return contentProvider.getParent(element);
+		final Row<T> row = rowsByElement.get(element);
+		
+		if (row == null) {
+			return groupModel.getParent(element);
+		}
+		
+		return (row.getParent() == null) ? null : row.getParent().getElement();
 	}
 
 	/**
 	 * Return the row's parent, or the row itself if it has none.
 	 */
 	public T getParentOrOwnElement(final Row<T> row) {
-		final T parent = getContentProvider().getParent(row.getElement());
-		return parent == null ? row.getElement() : parent;
+		return (row.getParent() == null) ? row.getElement() : row.getParent().getElement();
 	}
 
 	public boolean isSameGroup(final Row<T> row1, final Row<T> row2) {
@@ -1211,30 +2261,17 @@ public class GridModel<T> {
 	public List<Row<T>> getWholeGroup(final Row<T> row) {
 		final List<Row<T>> group = new ArrayList<>();
 
-		final T parentElement = contentProvider.getParent(row.getElement());
-		final List<T> childElements = contentProvider.getChildren(row.getElement());
-		if (parentElement != null) {
+		if (row.getParent() != null) {
 			//
 			// If this row has a parent. Include all the parent's children/grand-children.
 			//
-			final Row<T> parentRow = rowsByElement.get(parentElement);
-			// TODO: We may have a parent element but not a parent row? Seems to be causing an npe in some cases.
-			if (parentRow == null) {
-				logger.warn(String.format("Parent row missing for parentElement [%s]", contentProvider.getElementId(parentElement)));
-			} else {
-				group.addAll(getAllChildren(parentRow));
-			}
+			addAllChildren(row.getParent(), group);
 
-		} else if (childElements != null) {
+		} else if (row.isParentRow()) {
 			//
 			// If this row has any children, ensure they (and their grand-children are included.
 			//
-			group.add(row);
-			for (final Row<T> childRow : getChildren(row)) {
-				if (childRow != null) {
-					group.addAll(getAllChildren(childRow));
-				}
-			}
+			addAllChildren(row, group);
 		}
 
 		return group;
@@ -1244,13 +2281,40 @@ public class GridModel<T> {
 	 * Return the elements forming this group (children and parents).
 	 */
 	public List<T> getWholeGroup(final T element) {
+		final Row<T> row = rowsByElement.get(element);
+		
+		if (row == null) {
+			return getWholeGroupFromProvider(element);
+		}
+		
 		final List<T> group = new ArrayList<>();
-		final T parentElement = contentProvider.getParent(element);
-		final List<T> childElements = contentProvider.getChildren(element);
+		final Row<T> parentRow = (row.getParent() == null) ? (row.isParentRow() ? row : null) : row.getParent();
+		
+		if (parentRow == null) {
+			group.add(element);
+			
+		} else {
+			group.add(parentRow.getElement());
+			
+			for (final Row<T> childRow : parentRow.getChildren()) {
+				group.add(childRow.getElement());
+			}
+		}
+		
+		return group;
+	}
+	
+	/**
+	 * The group of an element without a row.
+	 */
+	private List<T> getWholeGroupFromProvider(final T element) {
+		final List<T> group = new ArrayList<>();
+		final T parentElement = groupModel.getParent(element);
+		final List<T> childElements = groupModel.getChildren(element);
 		
 		if (parentElement != null) {
 			group.add(parentElement);
-			group.addAll(contentProvider.getChildren(parentElement));
+			group.addAll(groupModel.getChildren(parentElement));
 		
 		} else if (childElements != null && !childElements.isEmpty()) {
 			group.add(element);
@@ -1264,54 +2328,38 @@ public class GridModel<T> {
 	}
 
 	/**
-	 * Return the row and all children and grandchildren for this row.
+	 * Add the row and all children and grandchildren for this row to the group.
 	 */
-	private List<Row<T>> getAllChildren(final Row<T> row) {
-		final List<Row<T>> group = new ArrayList<>();
+	private void addAllChildren(final Row<T> row, final List<Row<T>> group) {
 		group.add(row);
 
-		for (final Row<T> childRow : getChildren(row)) {
-			if (childRow != null) {
-				group.addAll(getAllChildren(childRow));
+		if (row.isParentRow()) {
+			for (final Row<T> childRow : row.getChildren()) {
+				addAllChildren(childRow, group);
 			}
 		}
-		return group;
 	}
 
 	/**
-	 * Return immediate children from this row.
+	 * Return immediate children from this row. The list can't be modified.
 	 */
 	public List<Row<T>> getChildren(final Row<T> row) {		
-		final List<Row<T>> children = new ArrayList<>();
-		final List<T> childElements = contentProvider.getChildren(row.getElement());
-
-		if (childElements != null) {
-			for (final T childElement : childElements) {
-				final Row<T> childRow = rowsByElement.get(childElement);
-				if (childRow != null) {
-					children.add(childRow);
-				}
-			}
-		}
-
-		return children;
+		return row.isParentRow() ? row.getChildren() : Collections.<Row<T>>emptyList();
 	}
 	
 	public List<Row<T>> getVisibleChildren(final Row<T> row) {
 		final List<Row<T>> children = new ArrayList<>();
-		final List<T> childElements = contentProvider.getChildren(row.getElement());
 
-		if (childElements != null) {
-			for (final T childElement : childElements) {
-				final Row<T> childRow = rowsByElement.get(childElement);
-				if (childRow != null && childRow.isVisible()) {
+		if (row.isParentRow()) {
+			for (final Row<T> childRow : row.getChildren()) {
+				if (childRow.isVisible()) {
 					children.add(childRow);
 				}
 			}
 		}
 
 		return children;
-	}	
+	}
 
 	@Override
 	public String toString() {
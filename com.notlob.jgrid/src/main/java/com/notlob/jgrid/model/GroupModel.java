@@ -0,0 +1,345 @@
+package com.notlob.jgrid.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.notlob.jgrid.providers.IGridContentProvider;
+import com.notlob.jgrid.providers.IGroupElementProvider;
+
+/**
+ * Groups the elements by the values of the group-by columns, if there's a group element provider. Each distinct
+ * combination of values is hashed to a group, which has a parent element (from the group element provider) and the
+ * elements with those values as it's children.
+ *
+ * The groups are kept up-to-date as elements are added, updated and removed - moving an element to another group is a
+ * couple of hash lookups, and a group is discarded when it's last child leaves. The GridModel adds and removes the rows
+ * of the parent elements.
+ *
+ * This is the content provider the rest of the grid uses. The group structure (and the collapsed state of the groups)
+ * comes from here while grouping, everything else is passed on to the grid's content provider.
+ *
+ * NOTE: This is an internal class not to be manipulated by client code.
+ *
+ * @author Stef
+ */
+public class GroupModel<T> implements IGridContentProvider<T> {
+
+	private final GridModel<T> gridModel;
+
+	// The grid's content provider.
+	private IGridContentProvider<T> contentProvider;
+
+	// Creates the parent element of each group. If null, the content provider's groups are used.
+	private IGroupElementProvider<T> groupElementProvider;
+
+	// True if there's a group element provider and some group-by columns.
+	private boolean grouping = false;
+
+	// The groups keyed by their group-by values, their parent elements and their children.
+	private final Map<List<Object>, Group<T>> groupsByKey;
+	private final Map<T, Group<T>> groupsByParent;
+	private final Map<T, Group<T>> groupsByChild;
+
+	// Groups whose children have changed since they were last taken.
+	private final Set<Group<T>> changedGroups;
+
+	// The parent elements are ordered by when their group was created.
+	private int nextNaturalIndex = 0;
+
+	private static class Group<T> {
+		private final List<Object> values;
+		private final T parent;
+		private final int naturalIndex;
+		private boolean collapsed = false;
+
+		// The children are removed by swapping the last child into their slot - so each child's index is kept.
+		private final List<T> children = new ArrayList<>();
+		private final List<T> unmodifiableChildren = Collections.unmodifiableList(children);
+		private final Map<T, Integer> childIndexes = new HashMap<>();
+
+		private Group(final List<Object> values, final T parent, final int naturalIndex) {
+			this.values = values;
+			this.parent = parent;
+			this.naturalIndex = naturalIndex;
+		}
+
+		private void addChild(final T child) {
+			childIndexes.put(child, children.size());
+			children.add(child);
+		}
+
+		private void removeChild(final T child) {
+			final int index = childIndexes.remove(child);
+			final T lastChild = children.remove(children.size() - 1);
+
+			if (index < children.size()) {
+				children.set(index, lastChild);
+				childIndexes.put(lastChild, index);
+			}
+		}
+	}
+
+	public GroupModel(final GridModel<T> gridModel) {
+		this.gridModel = gridModel;
+		this.groupsByKey = new HashMap<>();
+		this.groupsByParent = new HashMap<>();
+		this.groupsByChild = new HashMap<>();
+		this.changedGroups = new LinkedHashSet<>();
+	}
+
+	void setContentProvider(final IGridContentProvider<T> contentProvider) {
+		this.contentProvider = contentProvider;
+	}
+
+	public IGroupElementProvider<T> getGroupElementProvider() {
+		return groupElementProvider;
+	}
+
+	/**
+	 * The GridModel must regroup the elements afterwards.
+	 */
+	void setGroupElementProvider(final IGroupElementProvider<T> groupElementProvider) {
+		this.groupElementProvider = groupElementProvider;
+	}
+
+	/**
+	 * True if the grid groups the elements (rather than the content provider).
+	 */
+	public boolean isGrouping() {
+		return grouping;
+	}
+
+	/**
+	 * True if the element is the parent of one of the groups.
+	 */
+	public boolean isGroupElement(final T element) {
+		return grouping && groupsByParent.containsKey(element);
+	}
+
+	public Collection<T> getGroupElements() {
+		return Collections.unmodifiableSet(groupsByParent.keySet());
+	}
+
+	/**
+	 * The group-by values of a group's parent element - or null if it isn't one.
+	 */
+	public List<Object> getGroupValues(final T groupElement) {
+		final Group<T> group = grouping ? groupsByParent.get(groupElement) : null;
+		return (group == null) ? null : group.values;
+	}
+
+	/**
+	 * Put the element in the group for it's values - returning the group's parent element if the group is new (so the
+	 * caller can add it's row), otherwise null.
+	 */
+	T add(final T element) {
+		if (!grouping) {
+			return null;
+		}
+
+		remove(element);
+
+		final List<Object> values = getValues(element);
+		Group<T> group = groupsByKey.get(values);
+		T newGroupElement = null;
+
+		if (group == null) {
+			newGroupElement = groupElementProvider.createGroupElement(gridModel.getGroupByColumns(), values);
+			group = new Group<T>(values, newGroupElement, nextNaturalIndex++);
+			groupsByKey.put(values, group);
+			groupsByParent.put(newGroupElement, group);
+		}
+
+		group.addChild(element);
+		groupsByChild.put(element, group);
+		changedGroups.add(group);
+
+		return newGroupElement;
+	}
+
+	/**
+	 * Take the element out of it's group. If it was the last child, the group is discarded - the caller should remove it's
+	 * row.
+	 */
+	void remove(final T element) {
+		final Group<T> group = groupsByChild.remove(element);
+
+		if (group != null) {
+			group.removeChild(element);
+			changedGroups.add(group);
+
+			if (group.children.isEmpty()) {
+				groupsByKey.remove(group.values);
+				groupsByParent.remove(group.parent);
+			}
+		}
+	}
+
+	/**
+	 * If the element's group-by values have changed, move it to it's new group. Returns the parent element of the new group
+	 * if it had to be created, otherwise null.
+	 */
+	T update(final T element) {
+		final Group<T> group = grouping ? groupsByChild.get(element) : null;
+
+		if ((group == null) || group.values.equals(getValues(element))) {
+			return null;
+		}
+
+		return add(element);
+	}
+
+	/**
+	 * The parent elements of the groups whose children have changed since the last call. Any which are no-longer a group
+	 * element have been discarded.
+	 */
+	List<T> takeChangedGroups() {
+		final List<T> groupElements = new ArrayList<>(changedGroups.size());
+
+		for (final Group<T> group : changedGroups) {
+			groupElements.add(group.parent);
+		}
+
+		changedGroups.clear();
+		return groupElements;
+	}
+
+	/**
+	 * Discard the groups and group the elements from scratch - returning the parent elements of the new groups. Groups
+	 * which were collapsed stay collapsed, if their values are still grouped by.
+	 */
+	List<T> regroup(final Collection<T> elements) {
+		final Set<List<Object>> collapsedValues = new HashSet<>();
+		for (final Group<T> group : groupsByKey.values()) {
+			if (group.collapsed) {
+				collapsedValues.add(group.values);
+			}
+		}
+
+		clear();
+		grouping = (groupElementProvider != null) && !gridModel.getGroupByColumns().isEmpty();
+
+		final List<T> groupElements = new ArrayList<>();
+
+		if (grouping) {
+			for (final T element : elements) {
+				final T groupElement = add(element);
+
+				if (groupElement != null) {
+					final Group<T> group = groupsByParent.get(groupElement);
+					group.collapsed = collapsedValues.contains(group.values);
+					groupElements.add(groupElement);
+				}
+			}
+
+			changedGroups.clear();
+		}
+
+		return groupElements;
+	}
+
+	/**
+	 * Discard the groups - the group-by columns are still grouped by.
+	 */
+	void clear() {
+		groupsByKey.clear();
+		groupsByParent.clear();
+		groupsByChild.clear();
+		changedGroups.clear();
+		nextNaturalIndex = 0;
+	}
+
+	private List<Object> getValues(final T element) {
+		final List<Column> groupByColumns = gridModel.getGroupByColumns();
+
+		if (groupByColumns.size() == 1) {
+			return Collections.singletonList(contentProvider.getValue(groupByColumns.get(0), element));
+		}
+
+		final List<Object> values = new ArrayList<>(groupByColumns.size());
+		for (final Column column : groupByColumns) {
+			values.add(contentProvider.getValue(column, element));
+		}
+
+		return values;
+	}
+
+	@Override
+	public String getElementId(final T element) {
+		return contentProvider.getElementId(element);
+	}
+
+	@Override
+	public int getNaturalIndex(final T element) {
+		final Group<T> group = grouping ? groupsByParent.get(element) : null;
+		return (group == null) ? contentProvider.getNaturalIndex(element) : group.naturalIndex;
+	}
+
+	@Override
+	public Object getValue(final Column column, final T element) {
+		final Group<T> group = grouping ? groupsByParent.get(element) : null;
+
+		if (group != null) {
+			final int index = gridModel.getGroupByColumns().indexOf(column);
+
+			if (index != -1) {
+				return group.values.get(index);
+			}
+		}
+
+		//
+		// The value of a parent element in an aggregated column is the aggregate of it's children.
+		//
+		final AggregateModel<T> aggregateModel = gridModel.getAggregateModel();
+		if (aggregateModel.isAggregated(column) && (getChildren(element) != null)) {
+			return aggregateModel.getValue(column, element);
+		}
+
+		return contentProvider.getValue(column, element);
+	}
+
+	@Override
+	public T getParent(final T element) {
+		if (!grouping) {
+			return contentProvider.getParent(element);
+		}
+
+		final Group<T> group = groupsByChild.get(element);
+		return (group == null) ? null : group.parent;
+	}
+
+	@Override
+	public List<T> getChildren(final T element) {
+		if (!grouping) {
+			return contentProvider.getChildren(element);
+		}
+
+		final Group<T> group = groupsByParent.get(element);
+		return (group == null) ? null : group.unmodifiableChildren;
+	}
+
+	@Override
+	public boolean isCollapsed(final T element) {
+		final Group<T> group = grouping ? groupsByParent.get(element) : null;
+		return (group == null) ? contentProvider.isCollapsed(element) : group.collapsed;
+	}
+
+	@Override
+	public void setCollapsed(final T element, final boolean collapsed) {
+		final Group<T> group = grouping ? groupsByParent.get(element) : null;
+
+		if (group == null) {
+			contentProvider.setCollapsed(element, collapsed);
+
+		} else {
+			group.collapsed = collapsed;
+		}
+	}
+}
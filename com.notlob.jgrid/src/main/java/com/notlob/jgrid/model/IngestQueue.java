@@ -0,0 +1,217 @@
+package com.notlob.jgrid.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects adds, updates and removes from any thread so they can be applied to the model in one batch on the display
+ * thread.
+ *
+ * Changes to the same element are conflated - only the net change is kept. For example, any number of updates to an
+ * element become a single update, an add followed by updates is still an add and an add followed by a remove cancels
+ * out. Elements are matched with equals/hashCode (as the model does) and the most recently submitted instance is kept.
+ *
+ * NOTE: This is an internal class not to be manipulated by client code.
+ *
+ * @author Stef
+ */
+public class IngestQueue<T> {
+
+	private enum ChangeType {
+		ADD,
+		UPDATE,
+		REMOVE,
+
+		// A remove followed by an add.
+		REPLACE
+	}
+
+	private static class Change<T> {
+		private T element;
+		private ChangeType type;
+
+		private Change(final T element, final ChangeType type) {
+			this.element = element;
+			this.type = type;
+		}
+	}
+
+	/**
+	 * The net changes drained from the queue - removes should be applied before adds, then updates.
+	 */
+	public static class Batch<T> {
+		private final List<T> removes = new ArrayList<>();
+		private final List<T> adds = new ArrayList<>();
+		private final List<T> updates = new ArrayList<>();
+
+		public List<T> getRemoves() {
+			return removes;
+		}
+
+		public List<T> getAdds() {
+			return adds;
+		}
+
+		public List<T> getUpdates() {
+			return updates;
+		}
+
+		public boolean isEmpty() {
+			return removes.isEmpty() && adds.isEmpty() && updates.isEmpty();
+		}
+	}
+
+	// Pending changes in submission order, keyed by element.
+	private final Map<T, Change<T>> changes;
+
+	// Called (on the submitting thread) whenever the queue goes from empty to non-empty.
+	private final Runnable drainRequired;
+
+	// Diagnostic counters.
+	private long submittedCount = 0;
+	private long conflatedCount = 0;
+	private long drainCount = 0;
+
+	public IngestQueue(final Runnable drainRequired) {
+		this.drainRequired = drainRequired;
+		this.changes = new LinkedHashMap<>();
+	}
+
+	public void submitAdds(final Collection<T> elements) {
+		submit(elements, ChangeType.ADD);
+	}
+
+	public void submitUpdates(final Collection<T> elements) {
+		submit(elements, ChangeType.UPDATE);
+	}
+
+	public void submitRemoves(final Collection<T> elements) {
+		submit(elements, ChangeType.REMOVE);
+	}
+
+	private void submit(final Collection<T> elements, final ChangeType type) {
+		final boolean wasEmpty;
+
+		synchronized (this) {
+			wasEmpty = changes.isEmpty();
+
+			for (final T element : elements) {
+				submittedCount++;
+				final Change<T> change = changes.get(element);
+
+				if (change == null) {
+					changes.put(element, new Change<T>(element, type));
+
+				} else {
+					conflatedCount++;
+					change.element = element;
+					change.type = conflate(change.type, type);
+
+					if (change.type == null) {
+						changes.remove(element);
+					}
+				}
+			}
+
+			if (!wasEmpty || changes.isEmpty()) {
+				return;
+			}
+		}
+
+		drainRequired.run();
+	}
+
+	/**
+	 * The net effect of a pending change followed by another - or null if they cancel out.
+	 */
+	private ChangeType conflate(final ChangeType pending, final ChangeType next) {
+		switch (next) {
+			case ADD:
+				//
+				// Adding something which is (or may be) in the model already, replaces it.
+				//
+				return (pending == ChangeType.ADD) ? ChangeType.ADD : ChangeType.REPLACE;
+
+			case UPDATE:
+				//
+				// An update doesn't change an add, replace or remove.
+				//
+				return pending;
+
+			case REMOVE:
+				//
+				// Removing something which was only added in this batch, is nothing at all.
+				//
+				return (pending == ChangeType.ADD) ? null : ChangeType.REMOVE;
+
+			default:
+				return pending;
+		}
+	}
+
+	/**
+	 * Take all the pending changes.
+	 */
+	public Batch<T> drain() {
+		final Batch<T> batch = new Batch<>();
+
+		synchronized (this) {
+			for (final Change<T> change : changes.values()) {
+				switch (change.type) {
+					case ADD:
+						batch.adds.add(change.element);
+						break;
+
+					case UPDATE:
+						batch.updates.add(change.element);
+						break;
+
+					case REMOVE:
+						batch.removes.add(change.element);
+						break;
+
+					case REPLACE:
+						batch.removes.add(change.element);
+						batch.adds.add(change.element);
+						break;
+				}
+			}
+
+			changes.clear();
+			drainCount++;
+		}
+
+		return batch;
+	}
+
+	/**
+	 * The number of elements with pending changes.
+	 */
+	public synchronized int getDepth() {
+		return changes.size();
+	}
+
+	/**
+	 * The number of element changes submitted.
+	 */
+	public synchronized long getSubmittedCount() {
+		return submittedCount;
+	}
+
+	/**
+	 * The number of submitted changes which were merged into a change already pending for the same element.
+	 */
+	public synchronized long getConflatedCount() {
+		return conflatedCount;
+	}
+
+	/**
+	 * The number of times the queue has been drained.
+	 */
+	public synchronized long getDrainCount() {
+		return drainCount;
+	}
+}
@@ -1,7 +1,10 @@
 package com.notlob.jgrid.model;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedHashSet;
+import java.util.List;
 
 import org.eclipse.swt.graphics.GC;
 
@@ -17,10 +20,29 @@ public class Row<T> {
 	private boolean pinned;
 	private boolean alternateBackground;
 	private int height;
-	private int rowIndex = -1; // Allows updateElements to be implemented without an indexOf and remove to be called without using objects (and therefore list scans).
 	private int hiddenRowIndex = -1; // Allows remove to be called without using objects (and therefore list scans).
+	private int ordinal = -1; // Stable while the row is in the model - indexes the FilterModel's results.
 	private final T element;
 	
+	// The row's node in the visible RowList (if it's visible). Allows the row's index to be found without a list scan.
+	private RowList.Node<T> node;
+	
+	// The row's cached sort values - maintained by the SortModel.
+	private SortKey<T> sortKey;
+	
+	// The row's parent row and, if it's a parent, it's child rows - maintained by the GridModel as rows join, leave and
+	// are regrouped. The children are null if the row isn't a parent.
+	private Row<T> parent;
+	private List<Row<T>> children;
+	private List<Row<T>> unmodifiableChildren;
+	
+	// The row's position in it's parent's children - children are removed by swapping the last child into their slot.
+	private int childIndex = -1;
+	
+	// The selection of the model the row is in (if any). A row can be selected without it's own flag being set, when it
+	// falls in a selected range or the whole grid is selected.
+	private SelectionModel<T> selectionModel;
+	
 	// An animation frame counter.
 	private int frame;
 	private RowAnimation<T> animation;	
@@ -61,14 +83,43 @@ public class Row<T> {
 
 	public void setHeight(final int height) {
 		this.height = height;
+		
+		if (node != null) {
+			node.invalidateHeight();
+		}
 	}
 	
+	/**
+	 * The position of the row in the visible rows, or -1 if the row isn't visible. This is O(log n) the first time it's
+	 * asked for after the visible rows change, then O(1).
+	 */
 	public int getRowIndex() {
-		return rowIndex;
+		return (node == null) ? -1 : node.getIndex();
+	}
+
+	/**
+	 * Does nothing - the index comes from the row's position in the visible rows.
+	 *
+	 * @deprecated The grid keeps the index up-to-date itself.
+	 */
+	@Deprecated
+	public void setRowIndex(final int rowIndex) {
+	}
+	
+	RowList.Node<T> getNode() {
+		return node;
+	}
+	
+	void setNode(final RowList.Node<T> node) {
+		this.node = node;
+	}
+	
+	SortKey<T> getSortKey() {
+		return sortKey;
 	}
 	
-	public void setRowIndex(int rowIndex) {
-		this.rowIndex = rowIndex;
+	void setSortKey(final SortKey<T> sortKey) {
+		this.sortKey = sortKey;
 	}
 	
 	public int getHiddenRowIndex() {
@@ -79,6 +130,18 @@ public class Row<T> {
 		this.hiddenRowIndex = hiddenRowIndex;
 	}
 
+	/**
+	 * A small number, unique amongst the rows in the model, which doesn't change while the row is in the model. Ordinals
+	 * of removed rows are re-used. -1 if the row isn't in the model.
+	 */
+	public int getOrdinal() {
+		return ordinal;
+	}
+	
+	void setOrdinal(final int ordinal) {
+		this.ordinal = ordinal;
+	}
+
 	public T getElement() {
 		return element;
 	}
@@ -92,6 +155,13 @@ public class Row<T> {
 	}
 
 	public boolean isSelected() {
+		return (selectionModel == null) ? selected : selectionModel.isSelected(this);
+	}
+
+	/**
+	 * True if the row itself has been selected - rather than it being part of a selected range.
+	 */
+	boolean isSelectedFlag() {
 		return selected;
 	}
 
@@ -99,6 +169,10 @@ public class Row<T> {
 	void setSelected(final boolean selected) {
 		this.selected = selected;
 	}
+	
+	void setSelectionModel(final SelectionModel<T> selectionModel) {
+		this.selectionModel = selectionModel;
+	}
 
 	public boolean isPinned() {
 		return pinned;
@@ -108,6 +182,74 @@ public class Row<T> {
 		this.pinned = pinned;
 	}
 	
+	/**
+	 * True if the row's element had a child list (even if it's empty) when the row was last linked to it's group.
+	 */
+	public boolean isParentRow() {
+		return (children != null);
+	}
+	
+	public Row<T> getParent() {
+		return parent;
+	}
+	
+	void setParent(final Row<T> parent) {
+		this.parent = parent;
+	}
+	
+	/**
+	 * The rows of the children in the model - or null if the row isn't a parent.
+	 */
+	public List<Row<T>> getChildren() {
+		return unmodifiableChildren;
+	}
+	
+	/**
+	 * Make the row a parent (with no child rows yet) or not.
+	 */
+	void setParentRow(final boolean parentRow) {
+		clearChildren();
+		children = parentRow ? new ArrayList<Row<T>>() : null;
+		unmodifiableChildren = parentRow ? Collections.unmodifiableList(children) : null;
+	}
+	
+	void addChild(final Row<T> child) {
+		if (children != null) {
+			child.childIndex = children.size();
+			children.add(child);
+		}
+	}
+	
+	/**
+	 * Remove the child in constant time - the order of the children isn't kept.
+	 */
+	void removeChild(final Row<T> child) {
+		final int index = child.childIndex;
+		
+		if ((children == null) || (index < 0) || (index >= children.size()) || (children.get(index) != child)) {
+			return;
+		}
+		
+		final Row<T> lastChild = children.remove(children.size() - 1);
+		
+		if (lastChild != child) {
+			children.set(index, lastChild);
+			lastChild.childIndex = index;
+		}
+		
+		child.childIndex = -1;
+	}
+	
+	void clearChildren() {
+		if (children != null) {
+			for (final Row<T> child : children) {
+				child.childIndex = -1;
+			}
+			
+			children.clear();
+		}
+	}
+	
 	public boolean isAlternateBackground() {
 		return this.alternateBackground;
 	}
@@ -151,6 +293,6 @@ public class Row<T> {
 	@Override
 	public String toString() {
 		return String.format("Row : Index [%s] HiddenIndex [%s] Selected [%s] Height [%s] Pinned [%s] Alternate [%s] : %s", 
-				rowIndex, hiddenRowIndex, selected, height, pinned, alternateBackground, element);
+				getRowIndex(), hiddenRowIndex, isSelected(), height, pinned, alternateBackground, element);
 	}
 }
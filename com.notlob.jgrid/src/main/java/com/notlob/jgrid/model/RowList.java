@@ -0,0 +1,885 @@
+package com.notlob.jgrid.model;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.ToIntFunction;
+
+/**
+ * The visible rows of the grid, held in position order.
+ *
+ * Rows are stored in a size-augmented, balanced tree (a treap) rather than an array, so inserting at a position,
+ * removing a row and looking-up a row by position (or a position by row) are all O(log n) - regardless of how many
+ * rows the grid holds.
+ *
+ * Each row holds a reference to it's node in the tree, which is how a row can find it's own index without a list scan.
+ * A row can only belong to one RowList at a time.
+ *
+ * The list also tracks the range of positions which have been modified since the dirty range was last cleared, so
+ * anything derived from a row's neighbours (i.e. the alternate background) need only be recalculated over that range.
+ *
+ * Each node also holds the total height of the rows in it's sub-tree, so the y offset of a row, the total height of
+ * all rows and the row at a given offset are found in O(log n) rather than by summing every row's height. Row heights
+ * are resolved lazily (through the height function) the next time a height is needed - so adding rows, or
+ * invalidating their heights, doesn't calculate anything up-front.
+ *
+ * NOTE: This is an internal class not to be manipulated by client code.
+ *
+ * @author Stef
+ */
+public class RowList<T> extends AbstractList<Row<T>> {
+
+	/**
+	 * A node in the tree. The size is the number of nodes in the sub-tree rooted here (including itself) and the 
+	 * heightSum is the total height of those nodes.
+	 */
+	static final class Node<T> {
+		private Row<T> row;
+		private Node<T> left;
+		private Node<T> right;
+		private Node<T> parent;
+		private int priority;
+		private int size;
+		private int height;
+		private int heightSum;
+		private boolean heightStale;
+		private RowList<T> owner;
+
+		// The position last found for this node, which holds until the list's next structural change.
+		private int cachedIndex;
+		private int cachedModCount = -1;
+
+		private Node(final RowList<T> owner, final Row<T> row, final int priority) {
+			this.owner = owner;
+			this.row = row;
+			this.priority = priority;
+			this.size = 1;
+		}
+
+		/**
+		 * The position of this node in the list - found by walking up to the root, then kept until the list is next
+		 * structurally changed (so a row asked for it's index once per cell when painted only walks the tree once).
+		 */
+		int getIndex() {
+			if ((owner != null) && (cachedModCount == owner.modCount)) {
+				return cachedIndex;
+			}
+
+			int index = size(left);
+			Node<T> current = this;
+
+			while (current.parent != null) {
+				if (current == current.parent.right) {
+					index += size(current.parent.left) + 1;
+				}
+
+				current = current.parent;
+			}
+
+			if (owner != null) {
+				cachedIndex = index;
+				cachedModCount = owner.modCount;
+			}
+
+			return index;
+		}
+
+		/**
+		 * The row's height may have changed - it will be re-calculated the next time the list needs a height.
+		 */
+		void invalidateHeight() {
+			if ((owner != null) && !heightStale) {
+				heightStale = true;
+				owner.staleNodes.add(this);
+			}
+		}
+	}
+
+	/**
+	 * Told before the position of any row changes - so anything held by position can be kept in step.
+	 */
+	interface PositionListener<T> {
+		/**
+		 * A row is being inserted at the position - those at and after it move down one.
+		 */
+		void inserted(int index);
+
+		/**
+		 * The row at the position is about to be removed - those after it will move up one.
+		 */
+		void removing(int index, Row<T> row);
+
+		/**
+		 * Every row is about to be replaced or re-ordered.
+		 */
+		void reordering();
+
+		/**
+		 * Every row has been replaced or re-ordered - the rows have their new positions.
+		 */
+		void reordered();
+	}
+
+	private Node<T> root;
+
+	// Told as rows are inserted, removed or re-ordered (may be null).
+	private PositionListener<T> positionListener;
+
+	// Provides the height of a row when it's node's height is stale.
+	private final ToIntFunction<Row<T>> heightFunction;
+
+	// Nodes whose height needs to be re-calculated. A node's stale height still counts towards the heightSums.
+	private final List<Node<T>> staleNodes = new ArrayList<>();
+
+	// Used to generate the (pseudo-random) node priorities which keep the tree balanced.
+	private int seed = 0x2545F491;
+
+	// The lowest and highest positions modified since the dirty range was cleared (dirtyTo < dirtyFrom if clean).
+	private int dirtyFrom = Integer.MAX_VALUE;
+	private int dirtyTo = -1;
+
+	public RowList(final ToIntFunction<Row<T>> heightFunction) {
+		this.heightFunction = heightFunction;
+	}
+
+	void setPositionListener(final PositionListener<T> positionListener) {
+		this.positionListener = positionListener;
+	}
+
+	@Override
+	public int size() {
+		return size(root);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return (root == null);
+	}
+
+	@Override
+	public Row<T> get(final int index) {
+		return getNode(index).row;
+	}
+
+	@Override
+	public Row<T> set(final int index, final Row<T> row) {
+		checkNotPresent(row);
+
+		final Node<T> node = getNode(index);
+		final Row<T> old = node.row;
+
+		if (positionListener != null) {
+			positionListener.removing(index, old);
+			positionListener.inserted(index);
+		}
+
+		old.setNode(null);
+		node.row = row;
+		row.setNode(node);
+		node.invalidateHeight();
+		markDirty(index, index + 1);
+		return old;
+	}
+
+	@Override
+	public void add(final int index, final Row<T> row) {
+		if ((index < 0) || (index > size())) {
+			throw new IndexOutOfBoundsException(String.format("Index [%s] Size [%s]", index, size()));
+		}
+
+		checkNotPresent(row);
+
+		final Node<T> node = new Node<T>(this, row, nextPriority());
+		row.setNode(node);
+		node.invalidateHeight();
+		modCount++;
+
+		//
+		// The new row and the row after it have a new neighbour.
+		//
+		if (dirtyTo >= index) {
+			dirtyTo++;
+		}
+
+		markDirty(index, index + 1);
+
+		if (positionListener != null) {
+			positionListener.inserted(index);
+		}
+
+		if (root == null) {
+			root = node;
+			return;
+		}
+
+		//
+		// Descend to the leaf position for the index and hang the new node there.
+		//
+		Node<T> current = root;
+		int position = index;
+
+		while (true) {
+			current.size++;
+			final int leftSize = size(current.left);
+
+			if (position <= leftSize) {
+				if (current.left == null) {
+					current.left = node;
+					break;
+				}
+
+				current = current.left;
+
+			} else {
+				position -= (leftSize + 1);
+
+				if (current.right == null) {
+					current.right = node;
+					break;
+				}
+
+				current = current.right;
+			}
+		}
+
+		node.parent = current;
+
+		//
+		// Restore the heap-order of the priorities.
+		//
+		while ((node.parent != null) && (node.priority > node.parent.priority)) {
+			rotateUp(node);
+		}
+	}
+
+	@Override
+	public Row<T> remove(final int index) {
+		final Node<T> node = getNode(index);
+		removeNode(node);
+		return node.row;
+	}
+
+	@Override
+	public boolean remove(final Object o) {
+		final Node<T> node = getOwnedNode(o);
+
+		if (node == null) {
+			return false;
+		}
+
+		removeNode(node);
+		return true;
+	}
+
+	@Override
+	public int indexOf(final Object o) {
+		final Node<T> node = getOwnedNode(o);
+		return (node == null) ? -1 : node.getIndex();
+	}
+
+	@Override
+	public int lastIndexOf(final Object o) {
+		return indexOf(o);
+	}
+
+	@Override
+	public boolean contains(final Object o) {
+		return (getOwnedNode(o) != null);
+	}
+
+	/**
+	 * Remove each row by it's node rather than scanning the list.
+	 */
+	@Override
+	public boolean removeAll(final Collection<?> c) {
+		boolean modified = false;
+
+		for (final Object o : c) {
+			modified |= remove(o);
+		}
+
+		return modified;
+	}
+
+	@Override
+	public void clear() {
+		if (positionListener != null) {
+			positionListener.reordering();
+		}
+
+		for (Node<T> node = first(); node != null; node = successor(node)) {
+			node.row.setNode(null);
+			node.owner = null;
+		}
+
+		root = null;
+		staleNodes.clear();
+		modCount++;
+		clearDirtyRange();
+
+		if (positionListener != null) {
+			positionListener.reordered();
+		}
+	}
+
+	@Override
+	public Iterator<Row<T>> iterator() {
+		return new RowIterator(first());
+	}
+
+	/**
+	 * Iterate from the position specified to the end of the list, without a lookup for each position.
+	 */
+	public Iterator<Row<T>> iterator(final int fromIndex) {
+		return new RowIterator((fromIndex == size()) ? null : getNode(fromIndex));
+	}
+
+	@Override
+	public void sort(final Comparator<? super Row<T>> comparator) {
+		sort(comparator, false);
+	}
+
+	/**
+	 * Sort the rows, then rebuild the tree in a single pass.
+	 *
+	 * A parallel sort is a fork-join merge sort which, like the sequential sort, is stable - so both give the same order.
+	 */
+	public void sort(final Comparator<? super Row<T>> comparator, final boolean parallel) {
+		final Row<T>[] rows = toArray(newRowArray(size()));
+
+		if (parallel) {
+			Arrays.parallelSort(rows, comparator);
+
+		} else {
+			Arrays.sort(rows, comparator);
+		}
+
+		setRows(rows, rows.length);
+	}
+
+	/**
+	 * A new (empty) array of rows - Java can't create a generic array without a cast.
+	 */
+	@SuppressWarnings("unchecked")
+	static <T> Row<T>[] newRowArray(final int size) {
+		return (Row<T>[]) new Row<?>[size];
+	}
+
+	/**
+	 * Replace the entire contents of the list with the rows specified (in the order specified).
+	 *
+	 * This is O(n) - rather than the O(n log n) of adding each row in turn.
+	 */
+	public void setRows(final Row<T>[] rows, final int count) {
+		if (positionListener != null) {
+			positionListener.reordering();
+		}
+
+		for (Node<T> node = first(); node != null; node = successor(node)) {
+			node.row.setNode(null);
+			node.owner = null;
+		}
+
+		staleNodes.clear();
+		root = build(rows, 0, count - 1);
+
+		if (root != null) {
+			root.parent = null;
+			heapify(root);
+		}
+
+		modCount++;
+		clearDirtyRange();
+		markDirty(0, count - 1);
+
+		if (positionListener != null) {
+			positionListener.reordered();
+		}
+	}
+
+	/**
+	 * Flag the rows in the (inclusive) range as needing to be re-indexed.
+	 */
+	public void markDirty(final int from, final int to) {
+		dirtyFrom = Math.min(dirtyFrom, from);
+		dirtyTo = Math.max(dirtyTo, to);
+	}
+
+	public boolean isDirty() {
+		return (dirtyFrom <= getDirtyTo());
+	}
+
+	public int getDirtyFrom() {
+		return dirtyFrom;
+	}
+
+	/**
+	 * The highest dirty position, limited to the current size of the list.
+	 */
+	public int getDirtyTo() {
+		return Math.min(dirtyTo, size() - 1);
+	}
+
+	public void clearDirtyRange() {
+		dirtyFrom = Integer.MAX_VALUE;
+		dirtyTo = -1;
+	}
+
+	/**
+	 * Locate the row using the comparator specified - the list must already be ordered by the comparator.
+	 *
+	 * Returns the same values as Collections.binarySearch, but in O(log n) comparisons and no list scanning.
+	 */
+	public int binarySearch(final Row<T> key, final Comparator<? super Row<T>> comparator) {
+		Node<T> current = root;
+		int offset = 0;
+
+		while (current != null) {
+			final int result = comparator.compare(current.row, key);
+
+			if (result < 0) {
+				offset += size(current.left) + 1;
+				current = current.right;
+
+			} else if (result > 0) {
+				current = current.left;
+
+			} else {
+				return offset + size(current.left);
+			}
+		}
+
+		return -(offset + 1);
+	}
+
+	/**
+	 * The total height of all the rows.
+	 */
+	public int getTotalHeight() {
+		resolveHeights();
+		return heightSum(root);
+	}
+
+	/**
+	 * The y offset of the position specified - the total height of the rows before it, plus the spacing specified for each
+	 * of those rows. The index may be equal to the size of the list.
+	 */
+	public int getOffset(final int index, final int spacing) {
+		if ((index < 0) || (index > size())) {
+			throw new IndexOutOfBoundsException(String.format("Index [%s] Size [%s]", index, size()));
+		}
+
+		resolveHeights();
+
+		if (index == size()) {
+			return heightSum(root) + (index * spacing);
+		}
+
+		final Node<T> node = getNode(index);
+		int offset = heightSum(node.left);
+		Node<T> current = node;
+
+		while (current.parent != null) {
+			if (current == current.parent.right) {
+				offset += heightSum(current.parent.left) + current.parent.height;
+			}
+
+			current = current.parent;
+		}
+
+		return offset + (index * spacing);
+	}
+
+	/**
+	 * The lowest position whose offset (see getOffset) is at, or beyond, the offset specified. If the offset is beyond every
+	 * row then the size of the list is returned.
+	 */
+	public int getIndexAtOffset(final int offset, final int spacing) {
+		resolveHeights();
+
+		Node<T> current = root;
+		int index = 0;
+		int currentOffset = 0;
+
+		while (current != null) {
+			final int leftOffset = heightSum(current.left) + (size(current.left) * spacing);
+
+			if ((currentOffset + leftOffset) >= offset) {
+				current = current.left;
+
+			} else {
+				currentOffset += leftOffset + current.height + spacing;
+				index += size(current.left) + 1;
+				current = current.right;
+			}
+		}
+
+		return index;
+	}
+
+	private Node<T> getNode(final int index) {
+		if ((index < 0) || (index >= size())) {
+			throw new IndexOutOfBoundsException(String.format("Index [%s] Size [%s]", index, size()));
+		}
+
+		Node<T> current = root;
+		int position = index;
+
+		while (true) {
+			final int leftSize = size(current.left);
+
+			if (position < leftSize) {
+				current = current.left;
+
+			} else if (position == leftSize) {
+				return current;
+
+			} else {
+				position -= (leftSize + 1);
+				current = current.right;
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private Node<T> getOwnedNode(final Object o) {
+		if (o instanceof Row) {
+			final Node<T> node = ((Row<T>) o).getNode();
+
+			if ((node != null) && (node.owner == this)) {
+				return node;
+			}
+		}
+
+		return null;
+	}
+
+	private void checkNotPresent(final Row<T> row) {
+		if (row.getNode() != null) {
+			throw new IllegalArgumentException(String.format("Row is already present in a list %s", row));
+		}
+	}
+
+	/**
+	 * Rotate the node down until it's a leaf (or has one child), then splice it out of the tree.
+	 */
+	private void removeNode(final Node<T> node) {
+		//
+		// The row which slides into the removed row's position has a new neighbour.
+		//
+		final int index = node.getIndex();
+
+		if (positionListener != null) {
+			positionListener.removing(index, node.row);
+		}
+
+		if (dirtyTo > index) {
+			dirtyTo--;
+		}
+
+		markDirty(index, index);
+
+		while ((node.left != null) && (node.right != null)) {
+			rotateUp(node.left.priority > node.right.priority ? node.left : node.right);
+		}
+
+		final Node<T> child = (node.left != null) ? node.left : node.right;
+		final Node<T> parent = node.parent;
+
+		if (child != null) {
+			child.parent = parent;
+		}
+
+		if (parent == null) {
+			root = child;
+
+		} else if (parent.left == node) {
+			parent.left = child;
+
+		} else {
+			parent.right = child;
+		}
+
+		for (Node<T> current = parent; current != null; current = current.parent) {
+			current.size--;
+			current.heightSum -= node.height;
+		}
+
+		node.row.setNode(null);
+		node.owner = null;
+		node.parent = null;
+		node.left = null;
+		node.right = null;
+		modCount++;
+	}
+
+	/**
+	 * Rotate the node above it's parent (preserving the in-order sequence).
+	 */
+	private void rotateUp(final Node<T> node) {
+		final Node<T> parent = node.parent;
+		final Node<T> grandParent = parent.parent;
+
+		if (node == parent.left) {
+			parent.left = node.right;
+
+			if (node.right != null) {
+				node.right.parent = parent;
+			}
+
+			node.right = parent;
+
+		} else {
+			parent.right = node.left;
+
+			if (node.left != null) {
+				node.left.parent = parent;
+			}
+
+			node.left = parent;
+		}
+
+		parent.parent = node;
+		node.parent = grandParent;
+
+		if (grandParent == null) {
+			root = node;
+
+		} else if (grandParent.left == parent) {
+			grandParent.left = node;
+
+		} else {
+			grandParent.right = node;
+		}
+
+		update(parent);
+		update(node);
+	}
+
+	/**
+	 * Build a perfectly balanced tree over the range specified.
+	 */
+	private Node<T> build(final Row<T>[] rows, final int from, final int to) {
+		if (from > to) {
+			return null;
+		}
+
+		final int middle = (from + to) >>> 1;
+		final Node<T> node = new Node<T>(this, rows[middle], nextPriority());
+		rows[middle].setNode(node);
+		node.invalidateHeight();
+
+		node.left = build(rows, from, middle - 1);
+		node.right = build(rows, middle + 1, to);
+
+		if (node.left != null) {
+			node.left.parent = node;
+		}
+
+		if (node.right != null) {
+			node.right.parent = node;
+		}
+
+		update(node);
+		return node;
+	}
+
+	/**
+	 * Swap priorities (not nodes) down the tree so every parent out-ranks it's children. The shape of the tree is untouched.
+	 */
+	private void heapify(final Node<T> node) {
+		if (node.left != null) {
+			heapify(node.left);
+		}
+
+		if (node.right != null) {
+			heapify(node.right);
+		}
+
+		Node<T> current = node;
+		while (true) {
+			Node<T> highest = current;
+
+			if ((current.left != null) && (current.left.priority > highest.priority)) {
+				highest = current.left;
+			}
+
+			if ((current.right != null) && (current.right.priority > highest.priority)) {
+				highest = current.right;
+			}
+
+			if (highest == current) {
+				break;
+			}
+
+			final int priority = current.priority;
+			current.priority = highest.priority;
+			highest.priority = priority;
+			current = highest;
+		}
+	}
+
+	private Node<T> first() {
+		Node<T> current = root;
+
+		while ((current != null) && (current.left != null)) {
+			current = current.left;
+		}
+
+		return current;
+	}
+
+	private static <T> Node<T> successor(final Node<T> node) {
+		if (node.right != null) {
+			Node<T> current = node.right;
+
+			while (current.left != null) {
+				current = current.left;
+			}
+
+			return current;
+		}
+
+		Node<T> current = node;
+		while ((current.parent != null) && (current == current.parent.right)) {
+			current = current.parent;
+		}
+
+		return current.parent;
+	}
+
+	private static <T> void update(final Node<T> node) {
+		node.size = size(node.left) + size(node.right) + 1;
+		node.heightSum = heightSum(node.left) + heightSum(node.right) + node.height;
+	}
+
+	private static <T> int size(final Node<T> node) {
+		return (node == null) ? 0 : node.size;
+	}
+
+	private static <T> int heightSum(final Node<T> node) {
+		return (node == null) ? 0 : node.heightSum;
+	}
+
+	/**
+	 * Re-calculate any stale heights. If there are many, it's cheaper to recalculate every sum in one pass than to
+	 * walk up from each stale node.
+	 */
+	private void resolveHeights() {
+		if (staleNodes.isEmpty()) {
+			return;
+		}
+
+		if (staleNodes.size() > (size() >>> 3)) {
+			for (final Node<T> node : staleNodes) {
+				if (node.owner == this) {
+					node.height = heightFunction.applyAsInt(node.row);
+				}
+
+				node.heightStale = false;
+			}
+
+			staleNodes.clear();
+
+			if (root != null) {
+				updateHeightSums(root);
+			}
+
+		} else {
+			for (final Node<T> node : staleNodes) {
+				if (node.owner == this) {
+					final int delta = heightFunction.applyAsInt(node.row) - node.height;
+
+					if (delta != 0) {
+						node.height += delta;
+
+						for (Node<T> current = node; current != null; current = current.parent) {
+							current.heightSum += delta;
+						}
+					}
+				}
+
+				node.heightStale = false;
+			}
+
+			staleNodes.clear();
+		}
+	}
+
+	private void updateHeightSums(final Node<T> node) {
+		if (node.left != null) {
+			updateHeightSums(node.left);
+		}
+
+		if (node.right != null) {
+			updateHeightSums(node.right);
+		}
+
+		node.heightSum = heightSum(node.left) + heightSum(node.right) + node.height;
+	}
+
+	/**
+	 * An xor-shift generator - good enough to keep the tree balanced and cheaper than Random.
+	 */
+	private int nextPriority() {
+		seed ^= (seed << 13);
+		seed ^= (seed >>> 17);
+		seed ^= (seed << 5);
+		return seed;
+	}
+
+	/**
+	 * Walks the tree in-order, using the parent links, so a full iteration is O(n).
+	 */
+	private class RowIterator implements Iterator<Row<T>> {
+		private Node<T> next;
+		private Node<T> lastReturned;
+		private int expectedModCount;
+
+		private RowIterator(final Node<T> next) {
+			this.next = next;
+			expectedModCount = modCount;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return (next != null);
+		}
+
+		@Override
+		public Row<T> next() {
+			if (modCount != expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+
+			if (next == null) {
+				throw new NoSuchElementException();
+			}
+
+			lastReturned = next;
+			next = successor(next);
+			return lastReturned.row;
+		}
+
+		@Override
+		public void remove() {
+			if (lastReturned == null) {
+				throw new IllegalStateException();
+			}
+
+			if (modCount != expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+
+			removeNode(lastReturned);
+			lastReturned = null;
+			expectedModCount = modCount;
+		}
+	}
+}
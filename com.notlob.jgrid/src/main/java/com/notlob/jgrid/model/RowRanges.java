@@ -0,0 +1,252 @@
+package com.notlob.jgrid.model;
+
+import java.util.Arrays;
+
+/**
+ * A set of row positions held as sorted, disjoint, inclusive ranges (from-to) - so a range of thousands of rows costs
+ * the same as a range of one.
+ *
+ * Adding or removing a range, and shifting the ranges as a row is inserted or removed, are all O(number of ranges) - 
+ * though adding a range after the others is O(log(number of ranges)). Checking a position is O(log(number of ranges)).
+ *
+ * NOTE: This is an internal class not to be manipulated by client code.
+ *
+ * @author Stef
+ */
+public class RowRanges {
+
+	// The start and end (inclusive) of each range, in position order. Adjacent ranges are always merged.
+	private int[] froms;
+	private int[] tos;
+	private int rangeCount;
+
+	// The total number of positions in all ranges.
+	private int count;
+
+	public RowRanges() {
+		froms = new int[4];
+		tos = new int[4];
+	}
+
+	public boolean isEmpty() {
+		return (rangeCount == 0);
+	}
+
+	/**
+	 * The total number of positions in the ranges.
+	 */
+	public int count() {
+		return count;
+	}
+
+	/**
+	 * The number of ranges.
+	 */
+	public int getRangeCount() {
+		return rangeCount;
+	}
+
+	public int getFrom(final int range) {
+		return froms[range];
+	}
+
+	public int getTo(final int range) {
+		return tos[range];
+	}
+
+	public void clear() {
+		rangeCount = 0;
+		count = 0;
+	}
+
+	public boolean contains(final int position) {
+		final int range = findRange(position);
+		return (range != -1) && (position <= tos[range]);
+	}
+
+	/**
+	 * Add the (inclusive) range, merging it with any ranges it overlaps or touches.
+	 */
+	public void add(final int from, final int to) {
+		if (from > to) {
+			return;
+		}
+
+		//
+		// Find the ranges which overlap or touch the new range - they're replaced by one range spanning them all. The
+		// first is found with a binary search, so adding ranges in order is O(log(number of ranges)) each.
+		//
+		int first = findRange(from - 1);
+		if ((first == -1) || (tos[first] < from - 1)) {
+			first++;
+		}
+
+		int last = first;
+		int newFrom = from;
+		int newTo = to;
+
+		while ((last < rangeCount) && (froms[last] <= to + 1)) {
+			newFrom = Math.min(newFrom, froms[last]);
+			newTo = Math.max(newTo, tos[last]);
+			count -= (tos[last] - froms[last] + 1);
+			last++;
+		}
+
+		replace(first, last, 1);
+		froms[first] = newFrom;
+		tos[first] = newTo;
+		count += (newTo - newFrom + 1);
+	}
+
+	/**
+	 * Remove the (inclusive) range - splitting any range it falls inside of.
+	 */
+	public void remove(final int from, final int to) {
+		if (from > to) {
+			return;
+		}
+
+		int first = 0;
+		while ((first < rangeCount) && (tos[first] < from)) {
+			first++;
+		}
+
+		int last = first;
+		while ((last < rangeCount) && (froms[last] <= to)) {
+			last++;
+		}
+
+		if (first == last) {
+			return;
+		}
+
+		//
+		// Keep the parts of the first and last overlapping ranges which stick out either side.
+		//
+		final boolean keepHead = (froms[first] < from);
+		final boolean keepTail = (tos[last - 1] > to);
+		final int headFrom = froms[first];
+		final int tailTo = tos[last - 1];
+
+		for (int range=first; range<last; range++) {
+			count -= (tos[range] - froms[range] + 1);
+		}
+
+		replace(first, last, (keepHead ? 1 : 0) + (keepTail ? 1 : 0));
+
+		int range = first;
+		if (keepHead) {
+			froms[range] = headFrom;
+			tos[range] = from - 1;
+			count += (from - headFrom);
+			range++;
+		}
+
+		if (keepTail) {
+			froms[range] = to + 1;
+			tos[range] = tailTo;
+			count += (tailTo - to);
+		}
+	}
+
+	/**
+	 * A row has been inserted at the position - the positions at and after it move down one. The new position isn't in
+	 * any range.
+	 */
+	public void insert(final int position) {
+		int range = findRange(position);
+
+		if ((range != -1) && (position > froms[range]) && (position <= tos[range])) {
+			//
+			// Split the range around the new position.
+			//
+			final int to = tos[range];
+			tos[range] = position - 1;
+			replace(range + 1, range + 1, 1);
+			froms[range + 1] = position + 1;
+			tos[range + 1] = to + 1;
+			range += 2;
+
+		} else {
+			range = (range == -1) ? 0 : ((position > tos[range]) ? range + 1 : range);
+		}
+
+		for (; range<rangeCount; range++) {
+			froms[range]++;
+			tos[range]++;
+		}
+	}
+
+	/**
+	 * The row at the position has been removed - the positions after it move up one.
+	 */
+	public void delete(final int position) {
+		remove(position, position);
+
+		final int range = findRange(position);
+		int shift = (range == -1) ? 0 : range + 1;
+
+		for (int index=shift; index<rangeCount; index++) {
+			froms[index]--;
+			tos[index]--;
+		}
+
+		//
+		// The gap where the position was may have closed - keep the ranges merged.
+		//
+		if ((range != -1) && (range + 1 < rangeCount) && (tos[range] + 1 == froms[range + 1])) {
+			tos[range] = tos[range + 1];
+			replace(range + 1, range + 2, 0);
+		}
+	}
+
+	/**
+	 * The last range starting at or before the position - or -1 if there isn't one.
+	 */
+	private int findRange(final int position) {
+		int low = 0;
+		int high = rangeCount - 1;
+		int found = -1;
+
+		while (low <= high) {
+			final int middle = (low + high) >>> 1;
+
+			if (froms[middle] <= position) {
+				found = middle;
+				low = middle + 1;
+
+			} else {
+				high = middle - 1;
+			}
+		}
+
+		return found;
+	}
+
+	/**
+	 * Replace the ranges from first (inclusive) to last (exclusive) with the number of (unset) ranges specified.
+	 */
+	private void replace(final int first, final int last, final int replacements) {
+		final int newCount = rangeCount - (last - first) + replacements;
+
+		if (newCount > froms.length) {
+			froms = Arrays.copyOf(froms, Math.max(newCount, froms.length * 2));
+			tos = Arrays.copyOf(tos, froms.length);
+		}
+
+		System.arraycopy(froms, last, froms, first + replacements, rangeCount - last);
+		System.arraycopy(tos, last, tos, first + replacements, rangeCount - last);
+		rangeCount = newCount;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder("[");
+
+		for (int range=0; range<rangeCount; range++) {
+			sb.append((range == 0) ? "" : ", ").append(froms[range]).append("-").append(tos[range]);
+		}
+
+		return sb.append("]").toString();
+	}
+}
@@ -0,0 +1,199 @@
+package com.notlob.jgrid.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.ToIntFunction;
+
+/**
+ * What changed in the row selection - so listeners can do work proportional to the change rather than to the size of
+ * the selection.
+ *
+ * To apply the change to a copy of the selection: if it was cleared, discard the copy. If all rows were selected, every
+ * visible row is selected. Then add the rows in the selected ranges, add the selected elements and remove the
+ * unselected elements.
+ *
+ * @author Stef
+ */
+public class SelectionChange<T> {
+
+	/**
+	 * A range of rows selected together - the (inclusive) visible positions and the elements at each end, at the time the
+	 * range was selected.
+	 */
+	public static class Range<T> {
+		private final int fromIndex;
+		private final int toIndex;
+		private final T fromElement;
+		private final T toElement;
+
+		Range(final int fromIndex, final int toIndex, final T fromElement, final T toElement) {
+			this.fromIndex = fromIndex;
+			this.toIndex = toIndex;
+			this.fromElement = fromElement;
+			this.toElement = toElement;
+		}
+
+		public int getFromIndex() {
+			return fromIndex;
+		}
+
+		public int getToIndex() {
+			return toIndex;
+		}
+
+		public T getFromElement() {
+			return fromElement;
+		}
+
+		public T getToElement() {
+			return toElement;
+		}
+
+		public int size() {
+			return toIndex - fromIndex + 1;
+		}
+
+		public boolean contains(final int index) {
+			return (index >= fromIndex) && (index <= toIndex);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("Range [%s-%s] : %s -> %s", fromIndex, toIndex, fromElement, toElement);
+		}
+	}
+
+	// Finds the visible position of an element (-1 if it isn't visible).
+	private final ToIntFunction<T> positionFunction;
+
+	private boolean cleared;
+	private boolean allSelected;
+	private final Set<T> selected;
+	private final Set<T> unselected;
+	private final List<Range<T>> selectedRanges;
+
+	SelectionChange(final ToIntFunction<T> positionFunction) {
+		this.positionFunction = positionFunction;
+		this.selected = new LinkedHashSet<>();
+		this.unselected = new LinkedHashSet<>();
+		this.selectedRanges = new ArrayList<>();
+	}
+
+	/**
+	 * True if the previous selection was discarded before the rest of the change.
+	 */
+	public boolean isCleared() {
+		return cleared;
+	}
+
+	/**
+	 * True if every visible row was selected.
+	 */
+	public boolean isAllSelected() {
+		return allSelected;
+	}
+
+	public List<Range<T>> getSelectedRanges() {
+		return Collections.unmodifiableList(selectedRanges);
+	}
+
+	/**
+	 * Elements selected individually.
+	 */
+	public Collection<T> getSelected() {
+		return Collections.unmodifiableSet(selected);
+	}
+
+	/**
+	 * Elements unselected individually - including those hidden or removed while selected.
+	 */
+	public Collection<T> getUnselected() {
+		return Collections.unmodifiableSet(unselected);
+	}
+
+	public boolean isEmpty() {
+		return !cleared && !allSelected && selectedRanges.isEmpty() && selected.isEmpty() && unselected.isEmpty();
+	}
+
+	void clear() {
+		cleared = true;
+		allSelected = false;
+		selectedRanges.clear();
+		selected.clear();
+		unselected.clear();
+	}
+
+	/**
+	 * Every visible row is selected - so anything selected or unselected before doesn't matter any more.
+	 */
+	void selectAll() {
+		allSelected = true;
+		selectedRanges.clear();
+		selected.clear();
+		unselected.clear();
+	}
+
+	void select(final T element) {
+		if (!unselected.remove(element)) {
+			selected.add(element);
+		}
+	}
+
+	void unselect(final T element) {
+		if (!selected.remove(element)) {
+			unselected.add(element);
+		}
+	}
+
+	void selectRange(final Range<T> range) {
+		selectedRanges.add(range);
+
+		//
+		// The range is applied before the unselected elements, so any in the range aren't unselected any more.
+		//
+		if (!unselected.isEmpty()) {
+			unselected.removeIf(element -> range.contains(positionFunction.applyAsInt(element)));
+		}
+	}
+
+	SelectionChange<T> copy() {
+		final SelectionChange<T> copy = new SelectionChange<>(positionFunction);
+		copy.merge(this);
+		return copy;
+	}
+
+	/**
+	 * Follow this change with the one specified.
+	 */
+	void merge(final SelectionChange<T> change) {
+		if (change.cleared) {
+			clear();
+		}
+
+		if (change.allSelected) {
+			selectAll();
+		}
+
+		for (final Range<T> range : change.selectedRanges) {
+			selectRange(range);
+		}
+
+		for (final T element : change.selected) {
+			select(element);
+		}
+
+		for (final T element : change.unselected) {
+			unselect(element);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("SelectionChange : Cleared [%s] All [%s] Ranges %s Selected [%s] Unselected [%s]",
+				cleared, allSelected, selectedRanges, selected.size(), unselected.size());
+	}
+}
@@ -1,9 +1,13 @@
 package com.notlob.jgrid.model;
 
+import java.util.AbstractCollection;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 import org.slf4j.Logger;
@@ -11,10 +15,33 @@ import org.slf4j.LoggerFactory;
 
 import com.notlob.jgrid.Grid.SelectionStyle;
 
+/**
+ * The selected rows (or columns) in the grid.
+ *
+ * Rows are selected in one of three ways - individually (the row's own flag is set and it's element is held), as a 
+ * range of visible positions (a shift-click selects a range in O(number of ranges) however many rows it spans) or, when
+ * the whole grid is selected, as every visible row except those since unselected. A row is never held in more than one
+ * way, so the size of the selection is known without counting it.
+ * 
+ * The ranges are kept in step as single rows are inserted and removed. When the visible rows are replaced or re-ordered
+ * (i.e. sorted or filtered) the ranges are rebuilt from the new positions of the rows which were in them - 
+ * O(r log n) for r rows in the ranges, with neighbouring rows merged back into ranges. Rows in a range which are no
+ * longer visible are selected individually.
+ *
+ * The selected elements are returned as a view over the above rather than a copy. The changes made since listeners were
+ * last told are recorded as a SelectionChange.
+ *
+ * @author Stef
+ */
 public class SelectionModel<T> {
 
 	private final GridModel<T> gridModel;
-	private final Set<T> selectedElements;
+	private final Set<T> selectedElements;     // Rows selected individually.
+	private final RowRanges selectedRanges;    // Visible positions selected as ranges.
+	private boolean allSelected;               // Every visible row is selected...
+	private final Set<T> unselectedElements;   // ...except these.
+	private final Collection<T> selection;
+	private SelectionChange<T> change;         // The changes since listeners were last told.
 	private final List<Column> selectedColumns;
 	private T anchorElement;		// The anchor is the current cell cursor.
 	private Column anchorColumn;	//
@@ -29,7 +56,12 @@ public class SelectionModel<T> {
 	public SelectionModel(final GridModel<T> gridModel) {
 		this.gridModel = gridModel;
 		selectedElements = new HashSet<>();
+		selectedRanges = new RowRanges();
+		unselectedElements = new HashSet<>();
+		selection = new Selection();
+		change = createChange();
 		selectedColumns = new ArrayList<>();
+		gridModel.getRows().setPositionListener(new RangeTracker());
 	}
 	
 	public boolean isSelectGroupIfAllChildrenSelected() {
@@ -102,8 +134,35 @@ public class SelectionModel<T> {
 		return lastParentAnchorColumn;
 	}
 
-	public Set<T> getSelectedElements() {
-		return selectedElements;
+	/**
+	 * A view of the selected elements - it isn't a copy, so it changes as the selection does.
+	 */
+	public Collection<T> getSelectedElements() {
+		return selection;
+	}
+	
+	/**
+	 * Return the changes made since this was last called - and start recording afresh.
+	 */
+	SelectionChange<T> takeChange() {
+		final SelectionChange<T> taken = change;
+		change = createChange();
+		return taken;
+	}
+	
+	private SelectionChange<T> createChange() {
+		return new SelectionChange<T>(element -> {
+			final Row<T> row = gridModel.getRow(element);
+			return (row == null) ? -1 : row.getRowIndex();
+		});
+	}
+	
+	boolean isSelected(final Row<T> row) {
+		if (allSelected) {
+			return row.isVisible() && !unselectedElements.contains(row.getElement());
+		}
+		
+		return row.isSelectedFlag() || (!selectedRanges.isEmpty() && selectedRanges.contains(row.getRowIndex()));
 	}
 
 	private void selectRow(final Row<T> row) {
@@ -111,15 +170,37 @@ public class SelectionModel<T> {
 			clear(false);
 		}
 		
-		if (row.isVisible()) {
-			row.setSelected(true);
-			selectedElements.add(row.getElement());
+		if (row.isVisible() && !row.isSelected()) {
+			if (allSelected) {
+				unselectedElements.remove(row.getElement());
+				
+			} else {
+				row.setSelected(true);
+				selectedElements.add(row.getElement());
+			}
+			
+			change.select(row.getElement());
 		}
 	}
 
 	private void unselectRow(final Row<T> row) {
-		row.setSelected(false);
-		selectedElements.remove(row.getElement());
+		if (row.isSelected()) {
+			change.unselect(row.getElement());
+		}
+		
+		if (allSelected) {
+			if (row.isVisible()) {
+				unselectedElements.add(row.getElement());
+			}
+			
+		} else if (row.isSelectedFlag()) {
+			row.setSelected(false);
+			selectedElements.remove(row.getElement());
+			
+		} else if (!selectedRanges.isEmpty()) {
+			final int rowIndex = row.getRowIndex();
+			selectedRanges.remove(rowIndex, rowIndex);
+		}
 		
 		if (row.getElement() == anchorElement) {
 			anchorElement = null;
@@ -154,7 +235,7 @@ public class SelectionModel<T> {
 				break;
 			
 			case ROW_BASED:
-				setSelectedRows(gridModel.getRows());
+				selectAllRows();
 				break;
 				
 			case SINGLE_CELL_BASED:
@@ -165,7 +246,34 @@ public class SelectionModel<T> {
 		}
 	}
 
+	/**
+	 * Select every visible row without touching them - the rows are selected unless they're unselected afterwards.
+	 */
+	private void selectAllRows() {
+		clear(false);
+		
+		if (gridModel.getRows().isEmpty()) {
+			anchorElement = null;
+			anchorColumn = null;
+			
+		} else {
+			allSelected = true;
+			change.selectAll();
+			anchorElement = gridModel.getRows().get(0).getElement();
+			
+			if (anchorColumn == null && !gridModel.getColumns().isEmpty()) {
+				anchorColumn = gridModel.getColumns().get(0);
+			}
+		}
+		
+		gridModel.fireSelectionChangedEvent();
+	}
+
 	public void clear(final boolean notify) {
+		if (allSelected || !selectedElements.isEmpty() || !selectedRanges.isEmpty()) {
+			change.clear();
+		}
+		
 		for (final Object element : selectedElements) {
 			gridModel.getRowsByElement().get(element).setSelected(false);
 		}
@@ -175,6 +283,9 @@ public class SelectionModel<T> {
 		}
 
 		selectedElements.clear();
+		selectedRanges.clear();
+		allSelected = false;
+		unselectedElements.clear();
 		selectedColumns.clear();
 
 		if (notify) {
@@ -316,14 +427,31 @@ public class SelectionModel<T> {
 		gridModel.fireSelectionChangedEvent();
 	}
 
+	/**
+	 * The row is being hidden or removed from the model - it can't stay selected. Returns true if it was selected.
+	 * 
+	 * If the row was in a selected range, it was selected individually as it left the visible rows.
+	 */
 	boolean removeRow(final Row<T> row) {
+		final boolean removed = row.isSelected();
+		
 		//
-		// Clear the rows selection state.
+		// Clear the rows selection state (a hidden row isn't selected with the rest of the grid, so it needn't be held).
 		//
-		final boolean removed = selectedElements.remove(row.getElement());
-		row.setSelected(false);
+		if (allSelected) {
+			unselectedElements.remove(row.getElement());
+		}
+		
+		if (row.isSelectedFlag()) {
+			selectedElements.remove(row.getElement());
+			row.setSelected(false);
+		}
 
-		if (anchorElement == row.getElement()) {
+		if (removed) {
+			change.unselect(row.getElement());
+		}
+
+		if (removed && (anchorElement == row.getElement())) {
 			//
 			// If the row removed had the anchor, clear the anchor.
 			//
@@ -333,34 +461,87 @@ public class SelectionModel<T> {
 		
 		return removed;
 	}
+	
+	/**
+	 * The row is about to be shown. It wasn't selected while it was hidden, so if the whole grid is selected it must be
+	 * unselected - otherwise it would become selected just by being shown.
+	 */
+	void showRow(final Row<T> row) {
+		if (allSelected && !row.isVisible()) {
+			unselectedElements.add(row.getElement());
+		}
+	}
 
 	public void selectRange(final Row<T> row, final boolean keepExisting) {
-		final int anchorRowIndex = anchorElement == null ? 0 : gridModel.getRows().indexOf(gridModel.getRow(anchorElement));
-		final int selectionRowIndex = gridModel.getRows().indexOf(row);
+		final Row<T> anchorRow = (anchorElement == null) ? null : gridModel.getRow(anchorElement);
+		final int anchorRowIndex = (anchorRow == null) ? 0 : Math.max(0, anchorRow.getRowIndex());
+		final int selectionRowIndex = row.getRowIndex();
+		
+		if (selectionRowIndex == -1) {
+			return;
+		}
+		
 		final int lowerIndex = anchorRowIndex <= selectionRowIndex ? anchorRowIndex : selectionRowIndex;
 		final int upperIndex = anchorRowIndex > selectionRowIndex ? anchorRowIndex : selectionRowIndex;
-		final List<Row<T>> rowsToSelect = new ArrayList<>();
-
-		for (int rowIndex=lowerIndex; rowIndex<=upperIndex; rowIndex++) {
-			rowsToSelect.add(gridModel.getRows().get(rowIndex));
-		}
 
 		if (!keepExisting) {
 			clear(false);
 		}
 
-		for (final Row<T> toSelect : rowsToSelect) {
-			selectRow(toSelect);
-		}
+		selectRows(lowerIndex, upperIndex);
 
 		//
 		// If all child rows of a group are selected, select the group.
 		//
-		checkGroupSelection(rowsToSelect);
+		checkGroupSelection(gridModel.getRows().get(lowerIndex), gridModel.getRows().get(upperIndex));
 
 		gridModel.fireSelectionChangedEvent();
 	}
 	
+	/**
+	 * Select the visible rows in the (inclusive) range of positions. This is O(number of ranges) plus the number of rows
+	 * selected or unselected individually - not the number of rows in the range.
+	 */
+	private void selectRows(final int lowerIndex, final int upperIndex) {
+		if (selectionStyle == SelectionStyle.SINGLE_ROW_BASED) {
+			//
+			// Only one row can be selected - the last in the range.
+			//
+			selectRow(gridModel.getRows().get(upperIndex));
+			
+		} else if (allSelected) {
+			//
+			// Re-select any rows in the range which have been unselected.
+			//
+			for (final Iterator<T> iterator = unselectedElements.iterator(); iterator.hasNext(); ) {
+				final T element = iterator.next();
+				final int rowIndex = gridModel.getRow(element).getRowIndex();
+				
+				if ((rowIndex >= lowerIndex) && (rowIndex <= upperIndex)) {
+					iterator.remove();
+					change.select(element);
+				}
+			}
+			
+		} else {
+			//
+			// Rows already selected individually in the range are now held by the range instead.
+			//
+			for (final Iterator<T> iterator = selectedElements.iterator(); iterator.hasNext(); ) {
+				final Row<T> row = gridModel.getRow(iterator.next());
+				final int rowIndex = row.getRowIndex();
+				
+				if ((rowIndex >= lowerIndex) && (rowIndex <= upperIndex)) {
+					row.setSelected(false);
+					iterator.remove();
+				}
+			}
+			
+			selectedRanges.add(lowerIndex, upperIndex);
+			change.selectRange(new SelectionChange.Range<T>(lowerIndex, upperIndex, gridModel.getRows().get(lowerIndex).getElement(), gridModel.getRows().get(upperIndex).getElement()));
+		}
+	}
+	
 	public void selectRange(final Column column, final boolean keepExisting) {
 		final int anchorColumnIndex = anchorColumn == null ? 0 : gridModel.getColumns().indexOf(anchorColumn);
 		final int selectionColumnIndex = gridModel.getColumns().indexOf(column);
@@ -421,8 +602,13 @@ public class SelectionModel<T> {
 	 * We only need to check the first and last rows in the list (we're assuming they are in screen order).
 	 */
 	private void checkGroupSelection(final List<Row<T>> rowsToSelect) {
-		if (selectGroupIfAllChildrenSelected && !rowsToSelect.isEmpty()) {
-			final Row<T> firstRow = rowsToSelect.get(0);
+		if (!rowsToSelect.isEmpty()) {
+			checkGroupSelection(rowsToSelect.get(0), rowsToSelect.get(rowsToSelect.size()-1));
+		}
+	}
+	
+	private void checkGroupSelection(final Row<T> firstRow, final Row<T> lastRow) {
+		if (selectGroupIfAllChildrenSelected) {
 			if (gridModel.isGroupRow(firstRow)) {
 				checkGroup(gridModel.getWholeGroup(firstRow));
 			}
@@ -430,11 +616,8 @@ public class SelectionModel<T> {
 			//
 			// Check the last row in the selection.
 			//
-			if (rowsToSelect.size() > 1) {
-				final Row<T> lastRow = rowsToSelect.get(rowsToSelect.size()-1);
-				if (gridModel.isGroupRow(lastRow)) {
-					checkGroup(gridModel.getWholeGroup(lastRow));
-				}
+			if ((lastRow != firstRow) && gridModel.isGroupRow(lastRow)) {
+				checkGroup(gridModel.getWholeGroup(lastRow));
 			}
 		}
 	}
@@ -458,4 +641,191 @@ public class SelectionModel<T> {
 			unselectRow(parentRow);
 		}
 	}
+	
+	/**
+	 * Keeps the selected ranges in step with the positions of the visible rows.
+	 */
+	private class RangeTracker implements RowList.PositionListener<T> {
+		// The rows in the ranges while the rows are re-ordered.
+		private final List<Row<T>> rangedRows = new ArrayList<>();
+		
+		@Override
+		public void inserted(final int index) {
+			if (!selectedRanges.isEmpty()) {
+				selectedRanges.insert(index);
+			}
+		}
+
+		@Override
+		public void removing(final int index, final Row<T> row) {
+			if (!selectedRanges.isEmpty()) {
+				//
+				// The row keeps it's selection wherever it goes next (i.e. if it's being moved).
+				//
+				if (selectedRanges.contains(index)) {
+					row.setSelected(true);
+					selectedElements.add(row.getElement());
+				}
+				
+				selectedRanges.delete(index);
+			}
+		}
+
+		@Override
+		public void reordering() {
+			//
+			// The positions are about to mean nothing - remember the rows in the ranges instead.
+			//
+			for (int range=0; range<selectedRanges.getRangeCount(); range++) {
+				final Iterator<Row<T>> iterator = gridModel.getRows().iterator(selectedRanges.getFrom(range));
+				
+				for (int count=selectedRanges.getTo(range) - selectedRanges.getFrom(range); count>=0; count--) {
+					rangedRows.add(iterator.next());
+				}
+			}
+			
+			selectedRanges.clear();
+		}
+		
+		@Override
+		public void reordered() {
+			if (rangedRows.isEmpty()) {
+				return;
+			}
+			
+			final int[] positions = new int[rangedRows.size()];
+			int count = 0;
+			
+			for (final Row<T> row : rangedRows) {
+				final int position = row.getRowIndex();
+				
+				if (position == -1) {
+					//
+					// The row isn't visible any more - it keeps it's selection wherever it goes next.
+					//
+					row.setSelected(true);
+					selectedElements.add(row.getElement());
+					
+				} else {
+					positions[count++] = position;
+				}
+			}
+			
+			rangedRows.clear();
+			
+			//
+			// Rebuild the ranges from the new positions, in order, merging neighbouring positions.
+			//
+			Arrays.sort(positions, 0, count);
+			
+			int index = 0;
+			while (index < count) {
+				final int from = positions[index];
+				int to = from;
+				
+				while ((++index < count) && (positions[index] == to + 1)) {
+					to++;
+				}
+				
+				selectedRanges.add(from, to);
+			}
+		}
+	}
+	
+	/**
+	 * The selected elements - the individually selected elements, then those in each range (or, if the whole grid is 
+	 * selected, the visible elements which haven't been unselected).
+	 */
+	private class Selection extends AbstractCollection<T> {
+		@Override
+		public int size() {
+			return allSelected ? (gridModel.getRows().size() - unselectedElements.size()) : (selectedElements.size() + selectedRanges.count());
+		}
+		
+		@Override
+		public boolean isEmpty() {
+			return (size() == 0);
+		}
+		
+		@SuppressWarnings("unchecked")
+		@Override
+		public boolean contains(final Object o) {
+			final Row<T> row = gridModel.getRow((T) o);
+			return (row != null) && row.isSelected();
+		}
+
+		@Override
+		public Iterator<T> iterator() {
+			return allSelected ? new AllSelectedIterator() : new RangeIterator();
+		}
+	}
+	
+	private class RangeIterator implements Iterator<T> {
+		private final Iterator<T> individual = selectedElements.iterator();
+		private Iterator<Row<T>> rangeRows;
+		private int range;
+		private int remaining;
+		
+		@Override
+		public boolean hasNext() {
+			if (individual.hasNext()) {
+				return true;
+			}
+			
+			while (remaining == 0) {
+				if (range >= selectedRanges.getRangeCount()) {
+					return false;
+				}
+				
+				rangeRows = gridModel.getRows().iterator(selectedRanges.getFrom(range));
+				remaining = selectedRanges.getTo(range) - selectedRanges.getFrom(range) + 1;
+				range++;
+			}
+			
+			return true;
+		}
+
+		@Override
+		public T next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			
+			if (individual.hasNext()) {
+				return individual.next();
+			}
+			
+			remaining--;
+			return rangeRows.next().getElement();
+		}
+	}
+	
+	private class AllSelectedIterator implements Iterator<T> {
+		private final Iterator<Row<T>> rows = gridModel.getRows().iterator();
+		private Row<T> next;
+		
+		@Override
+		public boolean hasNext() {
+			while ((next == null) && rows.hasNext()) {
+				final Row<T> row = rows.next();
+				
+				if (!unselectedElements.contains(row.getElement())) {
+					next = row;
+				}
+			}
+			
+			return (next != null);
+		}
+
+		@Override
+		public T next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			
+			final T element = next.getElement();
+			next = null;
+			return element;
+		}
+	}
 }
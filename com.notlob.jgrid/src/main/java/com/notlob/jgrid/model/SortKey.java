@@ -0,0 +1,98 @@
+package com.notlob.jgrid.model;
+
+/**
+ * A snapshot of everything the DefaultRowComparator needs to know about a row's element - the values of the sorted
+ * columns, the natural index and the element's place in any group.
+ *
+ * Keys are extracted by the SortModel once per row, rather than calling the content provider on every comparison. A key
+ * is stale if it's version doesn't match the SortModel's (the sorted columns have changed) or it's element has been
+ * updated.
+ *
+ * NOTE: This is an internal class not to be manipulated by client code.
+ *
+ * @author Stef
+ */
+public class SortKey<T> {
+
+	private final T element;
+
+	// The row the key belongs to (null for the key of a parent element which has no row).
+	private final Row<T> row;
+
+	// The SortModel version this key was extracted for (-1 if the key needs re-extracting).
+	int version = -1;
+
+	// The values of the element for each sorted column (in the sort sequence). The array is replaced, never modified, when
+	// the key is re-extracted - so a copy of the key can share it.
+	Object[] values;
+
+	// The element's natural index from the content provider.
+	int naturalIndex;
+
+	// The element's parent (null if it has none) and the key of it's parent (or this key if it has no parent).
+	T parent;
+	SortKey<T> parentOrOwnKey;
+
+	// True if the element has (or could have) children.
+	boolean parentElement;
+
+	SortKey(final T element, final Row<T> row) {
+		this.element = element;
+		this.row = row;
+	}
+
+	/**
+	 * A copy of the key which isn't affected if this key is re-extracted. The copy's parentOrOwnKey is left for the caller.
+	 */
+	SortKey<T> copy() {
+		final SortKey<T> copy = new SortKey<T>(element, row);
+		copy.version = version;
+		copy.values = values;
+		copy.naturalIndex = naturalIndex;
+		copy.parent = parent;
+		copy.parentElement = parentElement;
+		return copy;
+	}
+
+	public T getElement() {
+		return element;
+	}
+
+	public Row<T> getRow() {
+		return row;
+	}
+
+	public Object getValue(final int sortedColumnIndex) {
+		return values[sortedColumnIndex];
+	}
+
+	public int getNaturalIndex() {
+		return naturalIndex;
+	}
+
+	public T getParent() {
+		return parent;
+	}
+
+	public SortKey<T> getParentOrOwnKey() {
+		return parentOrOwnKey;
+	}
+
+	public boolean isParentElement() {
+		return parentElement;
+	}
+
+	/**
+	 * The element's parent, or the element itself if it has no parent.
+	 */
+	public T getParentOrOwnElement() {
+		return (parent == null) ? element : parent;
+	}
+
+	/**
+	 * The element has a parent or could have children.
+	 */
+	public boolean isGroup() {
+		return (parent != null) || parentElement;
+	}
+}
@@ -1,19 +1,42 @@
 package com.notlob.jgrid.model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.notlob.jgrid.Grid.GroupRenderStyle;
+import com.notlob.jgrid.providers.IGridContentProvider;
 
 public class SortModel<T> {
 
 	private Comparator<Row<T>> rowComparator;
 	private final GridModel<T> gridModel;
 	private final List<Column> sortedColumns;
+	
+	// Bumped whenever something changes which affects every row's sort key (i.e. the sorted columns), making them all stale.
+	private int sortKeyVersion = 0;
+	
+	// Sorts of at least this many rows are spread across the common fork-join pool (-1 means never).
+	private int parallelSortThreshold = -1;
+	
+	// The sorted columns' comparators when the keys were extracted - values are pre-converted for DefaultColumnComparators.
+	private final List<Comparator<?>> sortKeyComparators;
+	
+	// Bumped by every sort, so any sort still running in the background is superseded.
+	private final AtomicInteger sortGeneration;
 
 	public SortModel(final GridModel<T> gridModel) {
 		this.gridModel = gridModel;
 		sortedColumns = new ArrayList<>();
+		sortKeyComparators = new ArrayList<>();
+		sortGeneration = new AtomicInteger();
 		rowComparator = new DefaultRowComparator<T>(gridModel);
 	}
 
@@ -21,7 +44,9 @@ public class SortModel<T> {
 	 * Called whenever a column is removed from the grid model.
 	 */
 	void removeColumn(final Column column) {
-		sortedColumns.remove(column);
+		if (sortedColumns.remove(column)) {
+			invalidateSortKeys();
+		}
 		
 		int sequence = 0;
 		for (Column existing : sortedColumns) {
@@ -36,6 +61,20 @@ public class SortModel<T> {
 	public Comparator<Row<T>> getRowComparator() {
 		return rowComparator;
 	}
+	
+	public int getParallelSortThreshold() {
+		return parallelSortThreshold;
+	}
+	
+	/**
+	 * Sort in parallel if there are at least this many visible rows, or -1 to always sort on the calling thread.
+	 * 
+	 * The resulting order is identical to a sequential sort (the merge sort is stable and ties fall back on the natural
+	 * index), but any custom row or column comparators must be safe to call from multiple threads.
+	 */
+	public void setParallelSortThreshold(final int parallelSortThreshold) {
+		this.parallelSortThreshold = parallelSortThreshold;
+	}
 
 	/**
 	 * Toggle the column's sort and apply to the current sort model (or replace the current model).
@@ -73,12 +112,20 @@ public class SortModel<T> {
 					return Integer.compare(o1.getSortSequence(), o2.getSortSequence());
 				}
 			});
+			
+			invalidateSortKeys();
 		}
 
 		//
 		// Now sort the data.
 		//
-		Collections.sort(gridModel.getRows(), rowComparator);
+		final BackgroundWorker<T> backgroundWorker = getBackgroundWorker();
+		if (backgroundWorker != null) {
+			sortRowsInBackground(backgroundWorker, notify ? column : null);
+			return;
+		}
+		
+		sortRows();
 		
 		//
 		// Re-index the rows.
@@ -91,8 +138,19 @@ public class SortModel<T> {
 		}
 	}
 
+	/**
+	 * Re-sort the rows. The element values may have changed without the grid being told, so every sort key is re-extracted.
+	 */
 	public void refresh() {
-		Collections.sort(gridModel.getRows(), rowComparator);
+		invalidateSortKeys();
+		
+		final BackgroundWorker<T> backgroundWorker = getBackgroundWorker();
+		if (backgroundWorker != null) {
+			sortRowsInBackground(backgroundWorker, null);
+			
+		} else {
+			sortRows();
+		}
 	}
 
 	private SortDirection toggleDirection(final SortDirection sortDirection) {
@@ -116,7 +174,14 @@ public class SortModel<T> {
 	 */
 	public void clear() {
 		clearInternal();
-		Collections.sort(gridModel.getRows(), rowComparator);
+		
+		final BackgroundWorker<T> backgroundWorker = getBackgroundWorker();
+		if (backgroundWorker != null) {
+			sortRowsInBackground(backgroundWorker, null);
+			return;
+		}
+		
+		sortRows();
 		gridModel.reindex();
 		gridModel.fireChangeEvent();
 	}
@@ -125,6 +190,10 @@ public class SortModel<T> {
 	 * Clears-down the sort model.
 	 */
 	private void clearInternal() {
+		if (!sortedColumns.isEmpty()) {
+			invalidateSortKeys();
+		}
+		
 		for (final Column column : sortedColumns) {
 			column.setSortSequence(-1);
 			column.setSortDirection(SortDirection.NONE);
@@ -139,11 +208,299 @@ public class SortModel<T> {
 	 * -1 is returned if the row is already present.
 	 */
 	public int getSortedRowIndex(final Row<T> row) {
-		final int index = Collections.binarySearch(gridModel.getRows(), row, rowComparator);
+		final int index = gridModel.getRows().binarySearch(row, rowComparator);
 		return index < 0 ? (index * -1) - 1 : index;
 	}
 	
 	public List<Column> getSortedColumns() {
 		return sortedColumns;
 	}
+	
+	/**
+	 * Make every row's sort key stale, they'll be re-extracted when next needed.
+	 */
+	public void invalidateSortKeys() {
+		sortKeyVersion++;
+	}
+	
+	/**
+	 * Make the row's sort key stale - because it's element has been updated.
+	 */
+	public void invalidateSortKey(final Row<T> row) {
+		if (row.getSortKey() != null) {
+			row.getSortKey().version = -1;
+		}
+	}
+	
+	/**
+	 * Get the row's sort key, extracting it (and it's parent's key) from the content provider if it's stale.
+	 */
+	public SortKey<T> getSortKey(final Row<T> row) {
+		final SortKey<T> key = validate(getOrCreateSortKey(row));
+		validate(key.parentOrOwnKey);
+		return key;
+	}
+	
+	/**
+	 * Copy the sort keys of the visible rows (in their current order). The copies are not affected by any subsequent 
+	 * updates, so can be sorted away from the display thread. 
+	 */
+	SortKey<T>[] snapshotSortKeys() {
+		final RowList<T> rows = gridModel.getRows();
+		final Map<SortKey<T>, SortKey<T>> parentCopies = new IdentityHashMap<>();
+		final SortKey<T>[] snapshot = newSortKeyArray(rows.size());
+		int index = 0;
+		
+		extractSortKeys(rows);
+		
+		for (final Row<T> row : rows) {
+			final SortKey<T> key = row.getSortKey();
+			final SortKey<T> copy = key.copy();
+			
+			if (key.parentOrOwnKey == key) {
+				copy.parentOrOwnKey = copy;
+				
+			} else {
+				SortKey<T> parentCopy = parentCopies.get(key.parentOrOwnKey);
+				
+				if (parentCopy == null) {
+					parentCopy = key.parentOrOwnKey.copy();
+					parentCopy.parentOrOwnKey = parentCopy;
+					parentCopies.put(key.parentOrOwnKey, parentCopy);
+				}
+				
+				copy.parentOrOwnKey = parentCopy;
+			}
+			
+			snapshot[index++] = copy;
+		}
+		
+		return snapshot;
+	}
+
+	/**
+	 * Sort the visible rows - in parallel if there are enough of them.
+	 */
+	private void sortRows() {
+		final RowList<T> rows = gridModel.getRows();
+		sortGeneration.incrementAndGet();
+		extractSortKeys(rows);
+		rows.sort(rowComparator, isParallel(rows.size()));
+	}
+	
+	/**
+	 * Sort rows which aren't in the model yet - in parallel if there are enough of them.
+	 */
+	void sortRows(final Row<T>[] rowsToSort, final int count) {
+		sortGeneration.incrementAndGet();
+		extractSortKeys(Arrays.asList(rowsToSort).subList(0, count));
+		
+		if (isParallel(count)) {
+			Arrays.parallelSort(rowsToSort, 0, count, rowComparator);
+			
+		} else {
+			Arrays.sort(rowsToSort, 0, count, rowComparator);
+		}
+	}
+	
+	private boolean isParallel(final int rowCount) {
+		return (parallelSortThreshold != -1) && (rowCount >= parallelSortThreshold);
+	}
+	
+	/**
+	 * Sorting in the background relies on the sort keys, so only a DefaultRowComparator which supports them can be used.
+	 */
+	private BackgroundWorker<T> getBackgroundWorker() {
+		return isSortKeySupported() ? gridModel.getBackgroundWorker() : null;
+	}
+	
+	private boolean isSortKeySupported() {
+		return (rowComparator instanceof DefaultRowComparator) && ((DefaultRowComparator<T>) rowComparator).isSortKeySupported();
+	}
+	
+	/**
+	 * Sort a snapshot of the keys on a pool thread, then swap the new order into the model on the display thread. The
+	 * keys are extracted here, so the content provider is only called on the display thread.
+	 * 
+	 * If a column is specified, it's sorted event is fired once the new order is in place.
+	 */
+	private void sortRowsInBackground(final BackgroundWorker<T> backgroundWorker, final Column sortedColumn) {
+		final DefaultRowComparator<T> comparator = (DefaultRowComparator<T>) rowComparator;
+		final List<Column> columns = new ArrayList<>(sortedColumns);
+		final SortKey<T>[] keys = snapshotSortKeys();
+		final boolean parallel = isParallel(keys.length);
+		
+		backgroundWorker.submit(sortGeneration, cancelled -> {
+			final Comparator<SortKey<T>> keyComparator = (key1, key2) -> {
+				if (cancelled.getAsBoolean()) {
+					throw new CancellationException();
+				}
+				
+				return comparator.compare(key1, key2, columns);
+			};
+			
+			if (parallel) {
+				Arrays.parallelSort(keys, keyComparator);
+				
+			} else {
+				Arrays.sort(keys, keyComparator);
+			}
+			
+			return keys;
+			
+		}, sortedKeys -> {
+			publishSortedRows(backgroundWorker, sortedKeys);
+			gridModel.reindex();
+			gridModel.fireChangeEvent();
+			
+			if (sortedColumn != null) {
+				gridModel.fireColumnSortedEvent(sortedColumn);
+			}
+		});
+	}
+	
+	/**
+	 * A new (empty) array of sort keys - Java can't create a generic array without a cast.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T> SortKey<T>[] newSortKeyArray(final int size) {
+		return (SortKey<T>[]) new SortKey<?>[size];
+	}
+	
+	/**
+	 * Replace the visible rows with the background sort's order. Rows which have been shown or updated since the snapshot 
+	 * was taken are inserted where they now belong, those removed or hidden are ignored.
+	 */
+	private void publishSortedRows(final BackgroundWorker<T> backgroundWorker, final SortKey<T>[] sortedKeys) {
+		final RowList<T> rows = gridModel.getRows();
+		final Set<Row<T>> orderedRows = Collections.newSetFromMap(new IdentityHashMap<Row<T>, Boolean>());
+		final Row<T>[] ordered = RowList.newRowArray(rows.size());
+		int count = 0;
+		
+		for (final SortKey<T> key : sortedKeys) {
+			final Row<T> row = key.getRow();
+			
+			if (rows.contains(row) && !backgroundWorker.isTouched(row) && orderedRows.add(row)) {
+				ordered[count++] = row;
+			}
+		}
+		
+		final List<Row<T>> misplacedRows = new ArrayList<>();
+		if (count != rows.size()) {
+			for (final Row<T> row : rows) {
+				if (!orderedRows.contains(row)) {
+					misplacedRows.add(row);
+				}
+			}
+		}
+		
+		rows.setRows(ordered, count);
+		
+		for (final Row<T> row : misplacedRows) {
+			rows.add(getSortedRowIndex(row), row);
+		}
+	}
+	
+	/**
+	 * Extract the keys of all the visible rows (and their parents) up-front, so the sort itself doesn't call the content
+	 * provider - and doesn't modify any keys, should it run in parallel. 
+	 */
+	private void extractSortKeys(final Iterable<Row<T>> rowsToExtract) {
+		if (isSortKeySupported()) {
+			checkSortKeyComparators();
+			
+			for (final Row<T> row : rowsToExtract) {
+				getSortKey(row);
+			}
+		}
+	}
+	
+	/**
+	 * If a sorted column's comparator has been replaced, the keys may hold values converted for the old comparator.
+	 */
+	private void checkSortKeyComparators() {
+		final List<Comparator<?>> comparators = new ArrayList<>(sortedColumns.size());
+		for (final Column column : sortedColumns) {
+			comparators.add(column.getComparator());
+		}
+		
+		if (!comparators.equals(sortKeyComparators)) {
+			sortKeyComparators.clear();
+			sortKeyComparators.addAll(comparators);
+			invalidateSortKeys();
+		}
+	}
+	
+	private SortKey<T> getOrCreateSortKey(final Row<T> row) {
+		SortKey<T> key = row.getSortKey();
+		
+		if (key == null) {
+			key = new SortKey<T>(row.getElement(), row);
+			row.setSortKey(key);
+		}
+		
+		return key;
+	}
+	
+	private SortKey<T> validate(final SortKey<T> key) {
+		if (key.version != sortKeyVersion) {
+			extractSortKey(key);
+		}
+		
+		return key;
+	}
+	
+	private void extractSortKey(final SortKey<T> key) {
+		final IGridContentProvider<T> contentProvider = gridModel.getContentProvider();
+		final T element = key.getElement();
+		
+		key.version = sortKeyVersion;
+		key.parent = contentProvider.getParent(element);
+		key.parentElement = (contentProvider.getChildren(element) != null);
+		key.naturalIndex = contentProvider.getNaturalIndex(element);
+		
+		final Object[] values = new Object[sortedColumns.size()];
+		for (int index=0; index<sortedColumns.size(); index++) {
+			values[index] = getSortValue(sortedColumns.get(index), key);
+		}
+		
+		key.values = values;
+		
+		//
+		// Link to the parent's key - which is validated when it's used, so it's always up-to-date with the parent.
+		//
+		if (key.parent == null) {
+			key.parentOrOwnKey = key;
+			
+		} else {
+			final Row<T> parentRow = gridModel.getRow(key.parent);
+			
+			if (parentRow != null) {
+				key.parentOrOwnKey = getOrCreateSortKey(parentRow);
+				
+			} else if ((key.parentOrOwnKey == null) || (key.parentOrOwnKey.getElement() != key.parent)) {
+				key.parentOrOwnKey = new SortKey<T>(key.parent, null);
+			}
+		}
+	}
+	
+	/**
+	 * Protect against comparisons between parent rows (that don't have a field for the sorted column)
+	 * and child rows. Parent rows do have a value in aggregated columns - the aggregate of their children.
+	 * 
+	 * Values for a DefaultColumnComparator are converted to the form it compares quickest (i.e. CollationKeys).
+	 */
+	private Object getSortValue(final Column column, final SortKey<T> key) {
+		if ((gridModel.getGroupRenderStyle() == GroupRenderStyle.INLINE) && key.parentElement && !gridModel.getGroupByColumns().contains(column) && !gridModel.getAggregateModel().isAggregated(column)) {
+			return null;
+		}
+
+		final Object value = gridModel.getContentProvider().getValue(column, key.getElement());
+		
+		if (column.getComparator() instanceof DefaultColumnComparator) {
+			return ((DefaultColumnComparator) column.getComparator()).getSortValue(value);
+		}
+		
+		return value;
+	}
 }
@@ -150,6 +150,13 @@ public class Viewport<T> {
 			viewportArea.y += (grid.getRowHeight(row) + gridModel.getStyleRegistry().getCellSpacingVertical());
 			viewportArea.height -= viewportArea.y;
 		}
+		
+		//
+		// Leave room at the bottom for the footer row.
+		//
+		if (gridModel.isShowFooter()) {
+			viewportArea.height -= (grid.getRowHeight(gridModel.getFooterRow()) + gridModel.getStyleRegistry().getCellSpacingVertical());
+		}
 
 		//
 		// Shift the viewport right enough to show the longest row number.
@@ -308,23 +315,16 @@ public class Viewport<T> {
 	 */
 	private int getRowsToFitAbove(final GC gc, final Row<T> startingRow) {
 		final Rectangle viewportArea = getViewportArea(gc);
+		final int rowIndex = startingRow.getRowIndex();
 		
 		int rowCount = 0;
-		if (!grid.getRows().isEmpty()) {
+		if (!grid.getRows().isEmpty() && (rowIndex != -1)) {
 			//
-			// Work from the last row - towards the first, trying to fit them into the viewport. 
+			// Find the first row which fits in the viewport above the bottom of the starting row.
 			//
-			int y = 0;
-			for (int rowIndex=(gridModel.getRows().indexOf(startingRow)); rowIndex>=0; rowIndex--) {
-				final Row<T> row = gridModel.getRows().get(rowIndex);
-				y += (grid.getRowHeight(row) + gridModel.getStyleRegistry().getCellSpacingVertical());
-	
-				if ((y <= viewportArea.height)) {
-					rowCount++;
-				} else {
-					break;
-				}
-			}
+			final int spacing = gridModel.getStyleRegistry().getCellSpacingVertical();
+			final int bottom = gridModel.getRows().getOffset(rowIndex + 1, spacing);
+			rowCount = (rowIndex + 1) - gridModel.getRows().getIndexAtOffset(bottom - viewportArea.height, spacing);
 		}
 		
 		return rowCount;
@@ -564,17 +564,8 @@ public class Viewport<T> {
 	 * Note: This is not offset by the column header heights.
 	 */
 	public int getRowY(final GC gc, final Row<T> row) {
-		int currentY = 0;
-
-		for (final Row<T> current : gridModel.getRows()) {
-			if (current == row) {
-				return currentY;
-			}
-
-			currentY += grid.getRowHeight(current);
-		}
-
-		return -1;
+		final int rowIndex = row.getRowIndex();
+		return (rowIndex == -1) ? -1 : gridModel.getRows().getOffset(rowIndex, 0);
 	}
 	
 	private boolean isRowAboveViewport(final Row<T> row) {
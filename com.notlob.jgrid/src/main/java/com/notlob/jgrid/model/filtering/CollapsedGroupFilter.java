@@ -10,10 +10,18 @@ import com.notlob.jgrid.providers.IGridContentProvider;
 public class CollapsedGroupFilter<T> extends Filter<T> {
 
 	private final IGridContentProvider<T> contentProvider;
+	
+	// True if the content provider's getParent and isCollapsed can be called from any thread.
+	private boolean threadSafeProvider;
 
 	public CollapsedGroupFilter(final IGridContentProvider<T> contentProvider) {
+		this(contentProvider, false);
+	}
+	
+	public CollapsedGroupFilter(final IGridContentProvider<T> contentProvider, final boolean threadSafeProvider) {
 		super(false);
 		this.contentProvider = contentProvider;
+		this.threadSafeProvider = threadSafeProvider;
 	}
 
 	/**
@@ -25,6 +33,18 @@ public class CollapsedGroupFilter<T> extends Filter<T> {
 		return (parent == null) || (!contentProvider.isCollapsed(parent));
 	}
 
+	/**
+	 * Only if the content provider is - it's called from whichever thread the filter is applied on.
+	 */
+	@Override
+	public boolean isThreadSafe() {
+		return threadSafeProvider;
+	}
+	
+	void setThreadSafeProvider(final boolean threadSafeProvider) {
+		this.threadSafeProvider = threadSafeProvider;
+	}
+
 	@Override
 	public String toReadableString(final boolean includeStyleTokens) {
 		return "Hiding collapsed groups";
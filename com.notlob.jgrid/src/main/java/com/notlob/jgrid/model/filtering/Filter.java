@@ -48,6 +48,23 @@ public abstract class Filter<T> {
 		return false;
 	}
 	
+	//
+	// Return true if every element this filter matches is also matched by the other filter. Replacing the other filter
+	// with this one can then only hide rows, so only the visible rows need matching. For example, a quick-filter for 
+	// 'abc' is narrower than one for 'ab'.
+	//
+	public boolean isNarrowerThan(final Filter<T> other) {
+		return false;
+	}
+	
+	//
+	// Return true if matches (and mandatoryInGroup) can be called from several threads at once. Only then can the
+	// filter be evaluated in parallel.
+	//
+	public boolean isThreadSafe() {
+		return false;
+	}
+	
 	@Override
 	public String toString() {
 		return toReadableString(false);
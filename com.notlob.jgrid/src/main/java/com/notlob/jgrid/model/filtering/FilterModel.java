@@ -1,81 +1,327 @@
 package com.notlob.jgrid.model.filtering;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.notlob.jgrid.model.BackgroundWorker;
 import com.notlob.jgrid.model.GridModel;
 import com.notlob.jgrid.model.Row;
 
+/**
+ * Holds the filters and decides which rows are shown.
+ * 
+ * Each filter's results are kept as a bitmap indexed by the row ordinals - whether the filter matches the row's element 
+ * on it's own. Whether a row is shown (and which highlighting filters it matches) is then a combination of the bitmaps, 
+ * taking in any group where a filter shows whole groups. Adding, removing or re-applying a single filter only evaluates 
+ * that filter and an updated row only invalidates it's own results.
+ * 
+ * Filters are evaluated cheapest and most selective first (see FilterStatistics) and, once a row is hidden, only the
+ * highlighting filters are evaluated for it.
+ */
 public class FilterModel<T> {
 
 	private final GridModel<T> gridModel;
 
 	// These are the filters presently in place.
 	private final Collection<Filter<T>> filters;
+	
+	// The same filters in the order they're evaluated. The list is replaced, never modified, when it's re-ordered.
+	private List<Filter<T>> evaluationOrder;
+	
+	// The results of each filter in place. A filter's criteria can change once it's removed, so it's results are 
+	// discarded with it.
+	private final Map<Filter<T>, FilterBitmap> bitmaps;
+	
+	// Provides the ability to collapse/expand groups.
+	private CollapsedGroupFilter<T> collapsedGroupFilter;
+	
+	// True if the content provider can be called away from the display thread - see setContentProviderThreadSafe.
+	private boolean contentProviderThreadSafe = false;
+	
+	// Match the rows on the fork-join pool if there are at least this many to match (and every filter is thread-safe), 
+	// or -1 to always match them on the calling thread.
+	private int parallelFilterThreshold = -1;
+	
+	// Only one in this many of the rows a filter is evaluated for are timed (by ordinal, or by position in a batch) - 
+	// timing every evaluation can cost as much as a cheap filter. Must be a power of two.
+	private final static int TIMING_SAMPLE_RATE = 16;
+	
+	// How match uses the filters' bitmaps.
+	private enum BitmapAccess {
+		// Evaluate every filter - i.e. away from the display thread where the bitmaps can change.
+		NONE,
+		
+		// Use the bitmaps but don't change them - i.e. on the fork-join pool. Missing results are evaluated.
+		READ_ONLY,
+		
+		// Use the bitmaps and keep any missing results.
+		READ_WRITE
+	}
 
 	// Toggles whether rows that do not pass a highlighting filter should be filtered out of view or not. Other filters still have the normal effect though.
 	// For example, if true, rows that match a filter are shown and those that match none are not. If false, a row is shown regardless of whether it matches
 	// a highlighting filter or not, although, if a filter exists which isn't a highlighting filter and the row doesn't match it, it will be hidden.
 	private boolean hideNoneHighlightedRows = true;
 	
+	// Bumped by every filter application, so any filtering still running in the background is superseded.
+	private final AtomicInteger filterGeneration;
+	
+	// The generation of the last filter application to complete.
+	private int appliedGeneration = 0;
+	
 	private final static Logger logger = LoggerFactory.getLogger(FilterModel.class);
 
 	public FilterModel(final GridModel<T> gridModel) {
 		this.gridModel = gridModel;
 		this.filters = new ArrayList<>();
+		this.evaluationOrder = new ArrayList<>();
+		this.filterGeneration = new AtomicInteger();
+		this.bitmaps = new IdentityHashMap<>();
 	}
 
+	/**
+	 * Adding filters can only hide rows, so only the visible rows are matched.
+	 */
 	public void addFilters(final Collection<Filter<T>> filters) {
 		gridModel.fireFiltersChangingEvent();
 		this.filters.addAll(filters);
-		applyFilters();
+		addBitmaps(filters);
+		reorderFilters();
+		applyFilters(true, false);
 		gridModel.fireFiltersChangedEvent();
 	}
 
+	/**
+	 * Removing filters can only reveal rows, so only the hidden rows are matched.
+	 */
 	public void removeFilters(final Collection<Filter<T>> filters) {
 		gridModel.fireFiltersChangingEvent();
 		this.filters.removeAll(filters);
-		applyFilters();
+		removeBitmaps(filters);
+		removeFilterMatches(filters);
+		reorderFilters();
+		applyFilters(false, true);
 		gridModel.fireFiltersChangedEvent();
 	}
 	
+	/**
+	 * Replace some filters with others. Only the visible rows are matched if the change can only hide rows (nothing is 
+	 * removed, or a filter is replaced with a narrower one), only the hidden rows if it can only reveal rows - otherwise
+	 * all rows are matched.
+	 */
 	public void setFilters(final Collection<Filter<T>> filtersToRemove, final Collection<Filter<T>> filtersToAdd) {
 		gridModel.fireFiltersChangingEvent();
 		this.filters.removeAll(filtersToRemove);
 		this.filters.addAll(filtersToAdd);
-		applyFilters();
+		removeBitmaps(filtersToRemove);
+		addBitmaps(filtersToAdd);
+		removeFilterMatches(filtersToRemove);
+		reorderFilters();
+		
+		if (isNarrowing(filtersToRemove, filtersToAdd)) {
+			applyFilters(true, false);
+			
+		} else if (isNarrowing(filtersToAdd, filtersToRemove) && !hasHighlightingFilter(filtersToAdd)) {
+			//
+			// (The visible rows could match a new highlighting filter - so they'd need matching too).
+			//
+			applyFilters(false, true);
+			
+		} else {
+			applyFilters();
+		}
+		
 		gridModel.fireFiltersChangedEvent();
 	}
+	
+	/**
+	 * True if replacing the old filters with the new ones can only hide rows.
+	 */
+	private boolean isNarrowing(final Collection<Filter<T>> oldFilters, final Collection<Filter<T>> newFilters) {
+		if (oldFilters.isEmpty()) {
+			return true;
+		}
+		
+		if ((oldFilters.size() == 1) && (newFilters.size() == 1)) {
+			return newFilters.iterator().next().isNarrowerThan(oldFilters.iterator().next());
+		}
+		
+		return false;
+	}
+	
+	private boolean hasHighlightingFilter(final Collection<Filter<T>> filters) {
+		for (final Filter<T> filter : filters) {
+			if (filter instanceof IHighlightingFilter) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	private void removeBitmaps(final Collection<Filter<T>> removedFilters) {
+		for (final Filter<T> filter : removedFilters) {
+			bitmaps.remove(filter);
+		}
+	}
+	
+	/**
+	 * Start the results of filters being added - a filter added again is evaluated again.
+	 */
+	private void addBitmaps(final Collection<Filter<T>> addedFilters) {
+		for (final Filter<T> filter : addedFilters) {
+			bitmaps.put(filter, new FilterBitmap());
+		}
+	}
+	
+	/**
+	 * Rows which aren't re-matched mustn't be left highlighted by a filter which has gone.
+	 */
+	private void removeFilterMatches(final Collection<Filter<T>> removedFilters) {
+		if (hasHighlightingFilter(removedFilters)) {
+			for (final Row<T> row : gridModel.getAllRows()) {
+				if (row.hasFilterMatches()) {
+					row.getFilterMatches().removeAll(removedFilters);
+				}
+			}
+		}
+	}
 
 	public Collection<Filter<T>> getFilters() {
 		return filters;
 	}
+	
+	/**
+	 * The filters in the order they're evaluated.
+	 */
+	public List<Filter<T>> getEvaluationOrder() {
+		return Collections.unmodifiableList(evaluationOrder);
+	}
+	
+	/**
+	 * The statistics of a filter in place, or null.
+	 */
+	public FilterStatistics getStatistics(final Filter<T> filter) {
+		final FilterBitmap bitmap = bitmaps.get(filter);
+		return (bitmap == null) ? null : bitmap.statistics;
+	}
+	
+	/**
+	 * Evaluate the cheapest, most selective filters first - they're the most likely to hide a row before the others need
+	 * evaluating.
+	 */
+	private void reorderFilters() {
+		final Map<Filter<T>, Double> ranks = new IdentityHashMap<>();
+		for (final Filter<T> filter : filters) {
+			ranks.put(filter, bitmaps.get(filter).statistics.getRank());
+		}
+		
+		final List<Filter<T>> evaluationOrder = new ArrayList<>(filters);
+		evaluationOrder.sort(Comparator.comparingDouble(ranks::get));
+		this.evaluationOrder = evaluationOrder;
+	}
+	
+	public Filter<T> getCollapsedGroupFilter() {
+		return collapsedGroupFilter;
+	}
 
 	public void clear() {
+		removeBitmaps(filters);
 		filters.clear();
+		evaluationOrder = new ArrayList<>();
 		
 		//
 		// Add a collapsed group filter to the model. It provides the ability to collapse/expand groups.
 		//
-		addFilters(Collections.singletonList((Filter<T>) new CollapsedGroupFilter<T>(gridModel.getContentProvider())));
+		collapsedGroupFilter = new CollapsedGroupFilter<T>(gridModel.getContentProvider(), contentProviderThreadSafe);
+		addFilters(Collections.singletonList(collapsedGroupFilter));
 		
 		applyFilters();
 	}
 
+	public int getParallelFilterThreshold() {
+		return parallelFilterThreshold;
+	}
+	
+	public boolean isContentProviderThreadSafe() {
+		return contentProviderThreadSafe;
+	}
+	
+	/**
+	 * The collapsed group filter calls the content provider - so rows are only matched in parallel or in the background 
+	 * if the content provider's getParent and isCollapsed can be called from any thread.
+	 */
+	public void setContentProviderThreadSafe(final boolean contentProviderThreadSafe) {
+		this.contentProviderThreadSafe = contentProviderThreadSafe;
+		
+		if (collapsedGroupFilter != null) {
+			collapsedGroupFilter.setThreadSafeProvider(contentProviderThreadSafe);
+		}
+	}
+	
+	/**
+	 * Match rows on the fork-join pool if there are at least this many to match, or -1 to always match them on the 
+	 * calling thread. Rows are only matched in parallel if every filter is thread-safe - including the content provider.
+	 */
+	public void setParallelFilterThreshold(final int parallelFilterThreshold) {
+		this.parallelFilterThreshold = parallelFilterThreshold;
+	}
+	
+	private boolean isParallel(final int rowCount) {
+		return (parallelFilterThreshold != -1) && (rowCount >= parallelFilterThreshold) && isThreadSafe();
+	}
+	
+	/**
+	 * True if every filter can be evaluated away from the display thread.
+	 */
+	private boolean isThreadSafe() {
+		for (final Filter<T> filter : filters) {
+			if (!filter.isThreadSafe()) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+
 	public boolean isHideNoneHighlightedRows() {
 		return hideNoneHighlightedRows;
 	}
 
+	/**
+	 * If there are highlighting filters in place the rows are shown or hidden from the existing results - nothing is 
+	 * re-evaluated.
+	 */
 	public void setHideNoneHighlightedRows(final boolean hideNoneHighlightedRows) {
+		if (this.hideNoneHighlightedRows == hideNoneHighlightedRows) {
+			return;
+		}
+		
 		this.hideNoneHighlightedRows = hideNoneHighlightedRows;
+		
+		if (hasHighlightingFilter(filters)) {
+			gridModel.fireFiltersChangingEvent();
+			applyFilters(hideNoneHighlightedRows, !hideNoneHighlightedRows);
+			gridModel.fireFiltersChangedEvent();
+		}
 	}
 
-	private boolean doesFilterHide(final Filter<T> filter) {
+	private boolean doesFilterHide(final Filter<T> filter, final boolean hideNoneHighlightedRows) {
 		if (!(filter instanceof IHighlightingFilter)) {
 			return true;
 		}
@@ -84,10 +330,17 @@ public class FilterModel<T> {
 	}
 
 	/**
-	 * Return true if one or more filters matches the row and it should be shown. If the row matches a filter, a FilterMatch is added
-	 * to the row.
+	 * Return true if one or more filters matches the row and it should be shown. If the row matches a highlighting filter, 
+	 * the filter is added to the row's matches.
 	 */
 	public boolean match(final Row<T> row) {
+		return match(row, null);
+	}
+	
+	/**
+	 * As match, for one of many rows being matched in a pass.
+	 */
+	private boolean match(final Row<T> row, final GroupMatches<T> groupMatches) {
 		//
 		// Clear any previous match.
 		//
@@ -95,60 +348,334 @@ public class FilterModel<T> {
 			row.getFilterMatches().clear();
 		}
 
-		//
-		// Check each filter building up all the matches we can.
-		//
+		return match(row, evaluationOrder, hideNoneHighlightedRows, BitmapAccess.READ_WRITE, groupMatches, row::addFilterMatch);
+	}
+	
+	/**
+	 * Match the rows (which must be in the model) in one pass, evaluating the filters in parallel where they're 
+	 * thread-safe. Returns whether each row should be shown.
+	 */
+	public boolean[] match(final Row<T>[] rowsToMatch) {
+		final boolean[] matches = new boolean[rowsToMatch.length];
+		final GroupMatches<T> groupMatches = new GroupMatches<>(filters, false);
+		
+		evaluate(rowsToMatch);
+		
+		for (int index=0; index<rowsToMatch.length; index++) {
+			matches[index] = match(rowsToMatch[index], groupMatches);
+		}
+		
+		reorderFilters();
+		return matches;
+	}
+	
+	/**
+	 * Return true if the row should be shown by the filters specified. The row itself isn't modified and no results are 
+	 * kept, so this can be called away from the display thread (providing the filters and content provider are thread-safe).
+	 */
+	public boolean match(final Row<T> row, final Collection<Filter<T>> filters, final boolean hideNoneHighlightedRows) {
+		return match(row, filters, hideNoneHighlightedRows, BitmapAccess.NONE, null, filter -> {});
+	}
+	
+	/**
+	 * Check each filter in turn, passing any matching highlighting filters to the consumer. Once a filter has hidden the
+	 * row only the highlighting filters are checked. Whole groups are only matched once if the pass's group matches are 
+	 * specified.
+	 */
+	private boolean match(final Row<T> row, final Collection<Filter<T>> filters, final boolean hideNoneHighlightedRows, final BitmapAccess access, final GroupMatches<T> groupMatches, final Consumer<IHighlightingFilter> highlighted) {
 		boolean allFiltersMatch = true;
 		for (final Filter<T> filter : filters) {
-			boolean matches = false;
-			
-			if (logger.isTraceEnabled()) {
-				logger.trace("Evaluating Filter {} for Row {}", filter, row);	
+			if (!allFiltersMatch && !(filter instanceof IHighlightingFilter)) {
+				continue;
 			}
 			
-			if ((filter.isShowWholeGroup() && gridModel.isGroupRow(row)) || filter.mandatoryInGroup(row.getElement())) {				
-				//
-				// If anything in the group match then this row should be shown OR if it's a parent row, always show it.
-				//
-				for (T relative : gridModel.getWholeGroup(row.getElement())) {
-					if (filter.matches(relative)) {
-						matches = true;
-						break;
-					}
-				}
-				
-			} else {
-				//
-				// Just check the individual row.
-				//
-				matches = filter.matches(row.getElement());
+			final FilterBitmap bitmap = (access == BitmapAccess.NONE) ? null : bitmaps.get(filter);
+			final boolean matches = matches(filter, row, bitmap, (access == BitmapAccess.READ_WRITE), groupMatches);
+			final boolean hides = !matches && doesFilterHide(filter, hideNoneHighlightedRows);
+			
+			if (bitmap != null) {
+				bitmap.statistics.recordResult(hides);
 			}
 			
-			if (logger.isTraceEnabled()) {
-				logger.trace("Filter {} {} for Row {}", filter, matches ? "matches" : "doesn't match", row);	
+			if (matches && (filter instanceof IHighlightingFilter)) {
+				highlighted.accept((IHighlightingFilter) filter);
 			}
 
-			if (!matches && doesFilterHide(filter)) {
+			if (hides) {
 				allFiltersMatch = false;
 			}
 		}
 
 		return allFiltersMatch;
 	}
+	
+	/**
+	 * Does the filter match the row - or anything in it's group if the filter shows whole groups. Results are taken from 
+	 * (and kept in, if requested) the filter's bitmap if it's specified. A group's result is taken from (or kept in) the 
+	 * group matches if they're specified.
+	 */
+	private boolean matches(final Filter<T> filter, final Row<T> row, final FilterBitmap bitmap, final boolean keep, final GroupMatches<T> groupMatches) {
+		boolean matches = false;
+		
+		if (logger.isTraceEnabled()) {
+			logger.trace("Evaluating Filter {} for Row {}", filter, row);	
+		}
+		
+		if (isMatchedByGroup(filter, row, groupMatches)) {				
+			//
+			// If anything in the group match then this row should be shown OR if it's a parent row, always show it.
+			//
+			if (groupMatches == null) {
+				matches = matchesGroup(filter, row, bitmap, keep, null);
+				
+			} else {
+				matches = groupMatches.get(filter).computeIfAbsent(getGroupElement(row, groupMatches), groupElement -> matchesGroup(filter, row, bitmap, keep, groupMatches));
+			}
+			
+		} else {
+			//
+			// Just check the individual row.
+			//
+			matches = matches(filter, row.getElement(), row, bitmap, keep);
+		}
+		
+		if (logger.isTraceEnabled()) {
+			logger.trace("Filter {} {} for Row {}", filter, matches ? "matches" : "doesn't match", row);	
+		}
+		
+		return matches;
+	}
+	
+	/**
+	 * True if the filter matches the row if it matches anything in the row's group.
+	 */
+	private boolean isMatchedByGroup(final Filter<T> filter, final Row<T> row, final GroupMatches<T> groupMatches) {
+		return (filter.isShowWholeGroup() && isGroupRow(row, groupMatches)) || filter.mandatoryInGroup(row.getElement());
+	}
+	
+	/**
+	 * Does the filter match anything in the row's group.
+	 */
+	private boolean matchesGroup(final Filter<T> filter, final Row<T> row, final FilterBitmap bitmap, final boolean keep, final GroupMatches<T> groupMatches) {
+		for (T relative : getWholeGroup(row, groupMatches)) {
+			if (matches(filter, relative, (bitmap == null) ? null : gridModel.getRow(relative), bitmap, keep)) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	//
+	// The row's group is taken from the pass's snapshot of the groups if it has one - otherwise from the GridModel.
+	//
+	
+	private boolean isGroupRow(final Row<T> row, final GroupMatches<T> groupMatches) {
+		return ((groupMatches == null) || !groupMatches.hasGroups()) ? gridModel.isGroupRow(row) : groupMatches.groupElements.containsKey(row);
+	}
+	
+	private T getGroupElement(final Row<T> row, final GroupMatches<T> groupMatches) {
+		if ((groupMatches == null) || !groupMatches.hasGroups()) {
+			return gridModel.getParentOrOwnElement(row);
+		}
+		
+		final T groupElement = groupMatches.groupElements.get(row);
+		return (groupElement == null) ? row.getElement() : groupElement;
+	}
+	
+	private List<T> getWholeGroup(final Row<T> row, final GroupMatches<T> groupMatches) {
+		if ((groupMatches == null) || !groupMatches.hasGroups()) {
+			return gridModel.getWholeGroup(row.getElement());
+		}
+		
+		final T groupElement = groupMatches.groupElements.get(row);
+		return (groupElement == null) ? Collections.singletonList(row.getElement()) : groupMatches.wholeGroups.get(groupElement);
+	}
+	
+	/**
+	 * Does the filter match the element on it's own. The result is taken from the row's bit in the filter's bitmap, or
+	 * evaluated (and kept there if requested).
+	 */
+	private boolean matches(final Filter<T> filter, final T element, final Row<T> row, final FilterBitmap bitmap, final boolean keep) {
+		if ((bitmap == null) || (row == null) || (row.getOrdinal() == -1)) {
+			return filter.matches(element);
+		}
+		
+		final int ordinal = row.getOrdinal();
+		
+		if (!bitmap.evaluated.get(ordinal)) {
+			bitmap.statistics.recordEvaluations(1);
+			final boolean matches = sampledMatches(filter, element, bitmap.statistics, ordinal);
+			
+			if (!keep) {
+				return matches;
+			}
+			
+			bitmap.matched.set(ordinal, matches);
+			bitmap.evaluated.set(ordinal);
+		}
+		
+		return bitmap.matched.get(ordinal);
+	}
+	
+	/**
+	 * Evaluate the filter - timing it if the sample number is one of those timed.
+	 */
+	private boolean sampledMatches(final Filter<T> filter, final T element, final FilterStatistics statistics, final int sample) {
+		if ((sample & (TIMING_SAMPLE_RATE - 1)) != 0) {
+			return filter.matches(element);
+		}
+		
+		final long start = System.nanoTime();
+		final boolean matches = filter.matches(element);
+		statistics.recordTiming(System.nanoTime() - start);
+		return matches;
+	}
+	
+	/**
+	 * Evaluate each filter, in order, for any of the rows (which must be in the model) it has no results for - in parallel
+	 * if the filter is thread-safe. The results are kept for match. Rows a filter has certainly hidden are skipped by the
+	 * filters after it (apart from highlighting filters).
+	 */
+	private void evaluate(final Row<T>[] rowsToEvaluate) {
+		final boolean[] matches = new boolean[rowsToEvaluate.length];
+		final boolean[] evaluated = new boolean[rowsToEvaluate.length];
+		final boolean[] hidden = new boolean[rowsToEvaluate.length];
+		
+		for (final Filter<T> filter : evaluationOrder) {
+			final FilterBitmap bitmap = bitmaps.get(filter);
+			final boolean highlighting = (filter instanceof IHighlightingFilter);
+			final boolean hiding = doesFilterHide(filter, hideNoneHighlightedRows);
+			final IntStream indexes = IntStream.range(0, rowsToEvaluate.length);
+			Arrays.fill(evaluated, false);
+			
+			(filter.isThreadSafe() ? indexes.parallel() : indexes).forEach(index -> {
+				if (hidden[index] && !highlighting) {
+					return;
+				}
+				
+				final Row<T> row = rowsToEvaluate[index];
+				final boolean rowMatches;
+				
+				if (bitmap.evaluated.get(row.getOrdinal())) {
+					rowMatches = bitmap.matched.get(row.getOrdinal());
+					
+				} else {
+					rowMatches = matches[index] = sampledMatches(filter, row.getElement(), bitmap.statistics, index);
+					evaluated[index] = true;
+				}
+				
+				if (!rowMatches && hiding && !isMatchedByGroup(filter, row, null)) {
+					hidden[index] = true;
+				}
+			});
+			
+			//
+			// BitSets aren't thread-safe, so they're only set on this thread.
+			//
+			int evaluations = 0;
+			for (int index=0; index<rowsToEvaluate.length; index++) {
+				if (evaluated[index]) {
+					final int ordinal = rowsToEvaluate[index].getOrdinal();
+					bitmap.matched.set(ordinal, matches[index]);
+					bitmap.evaluated.set(ordinal);
+					evaluations++;
+				}
+			}
+			
+			bitmap.statistics.recordEvaluations(evaluations);
+		}
+	}
+	
+	/**
+	 * The row's element has changed (or the row is new) - so any results held for it are out-of-date.
+	 */
+	public void invalidate(final Row<T> row) {
+		final int ordinal = row.getOrdinal();
+		
+		if (ordinal != -1) {
+			for (final FilterBitmap bitmap : bitmaps.values()) {
+				bitmap.evaluated.clear(ordinal);
+			}
+		}
+	}
+	
+	/**
+	 * Forget every result - the rows (or the filters criteria) have all changed.
+	 */
+	public void discardResults() {
+		for (final FilterBitmap bitmap : bitmaps.values()) {
+			bitmap.clear();
+		}
+	}
 
 	/**
-	 * Run all rows through the current set of filters and hide/show the rows as appropriate.
+	 * Run all rows through the current set of filters and hide/show the rows as appropriate. Every filter is re-evaluated
+	 * - in case it's criteria have changed.
 	 */
 	public void applyFilters() {
-		boolean selectionChanged = false;
+		discardResults();
+		applyFilters(true, true);
+	}
+	
+	/**
+	 * Re-evaluate one filter (i.e. it's criteria have changed) and hide/show the rows as appropriate. The other filters'
+	 * results are re-used.
+	 */
+	public void applyFilter(final Filter<T> filter) {
+		final FilterBitmap bitmap = bitmaps.get(filter);
+		
+		if (bitmap != null) {
+			bitmap.clear();
+		}
+		
+		applyFilters(true, true);
+	}
+	
+	/**
+	 * Hide the visible rows which no-longer match the filters and/or show the hidden rows which now do.
+	 */
+	private void applyFilters(final boolean matchVisibleRows, final boolean matchHiddenRows) {
+		if ((appliedGeneration != filterGeneration.get()) && !(matchVisibleRows && matchHiddenRows)) {
+			//
+			// A background application is pending (and will be superseded) or was superseded before it was published, so
+			// the rows have to be matched against every filter.
+			//
+			applyFilters(true, true);
+			return;
+		}
+		
+		//
+		// The GroupModel's own groups (and their collapsed states) change on the display thread, so the collapsed group
+		// filter can't be applied in the background while it's grouping.
+		//
+		final BackgroundWorker<T> backgroundWorker = gridModel.getBackgroundWorker();
+		if ((backgroundWorker != null) && isThreadSafe() && !gridModel.getGroupModel().isGrouping()) {
+			applyFiltersInBackground(backgroundWorker, matchVisibleRows, matchHiddenRows);
+			return;
+		}
+		
+		appliedGeneration = filterGeneration.incrementAndGet();
+		
+		final int rowCount = (matchVisibleRows ? gridModel.getRows().size() : 0) + (matchHiddenRows ? gridModel.getHiddenRows().size() : 0);
+		if (isParallel(rowCount)) {
+			final FilterResult<T> result = matchInParallel(matchVisibleRows, matchHiddenRows);
+			reorderFilters();
+			hideAndShowRows(result.rowsToHide, result.rowsToShow);
+			return;
+		}
+		
+		final GroupMatches<T> groupMatches = new GroupMatches<>(filters, false);
 		
 		//
 		// Build a list of rows to hide that are shown.
 		//
-		final List<Row<T>> rowsToHide = new ArrayList<>();		
-		for (final Row<T> row : gridModel.getRows()) {
-			if (!match(row)) {
-				rowsToHide.add(row);
+		final List<Row<T>> rowsToHide = new ArrayList<>();
+		if (matchVisibleRows) {
+			for (final Row<T> row : gridModel.getRows()) {
+				if (!match(row, groupMatches)) {
+					rowsToHide.add(row);
+				}
 			}
 		}
 
@@ -156,52 +683,202 @@ public class FilterModel<T> {
 		// Build a list of rows to show that are hidden.
 		//
 		final List<Row<T>> rowsToShow = new ArrayList<>();
-		for (final Row<T> row : gridModel.getHiddenRows()) {
-			if (match(row)) {
-				rowsToShow.add(row);
+		if (matchHiddenRows) {
+			for (final Row<T> row : gridModel.getHiddenRows()) {
+				if (match(row, groupMatches)) {
+					rowsToShow.add(row);
+				}
 			}
 		}
 		
+		reorderFilters();
+		hideAndShowRows(rowsToHide, rowsToShow);
+	}
+	
+	/**
+	 * A new (empty) array of rows - Java can't create a generic array without a cast.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T> Row<T>[] newRowArray(final int size) {
+		return (Row<T>[]) new Row<?>[size];
+	}
+	
+	/**
+	 * Match the rows on the fork-join pool. Any missing results are evaluated first, then each thread combines the results
+	 * for it's share of the rows into it's own buffer. Nothing is modified until the buffers are merged - back on this 
+	 * thread.
+	 */
+	private FilterResult<T> matchInParallel(final boolean matchVisibleRows, final boolean matchHiddenRows) {
+		final List<Row<T>> snapshot = new ArrayList<>();
+		
+		if (matchVisibleRows) {
+			snapshot.addAll(gridModel.getRows());
+		}
+		
+		final int visibleCount = snapshot.size();
+		
+		if (matchHiddenRows) {
+			snapshot.addAll(gridModel.getHiddenRows());
+		}
+		
+		final Row<T>[] rowsToMatch = snapshot.toArray(newRowArray(snapshot.size()));
+		evaluate(rowsToMatch);
+		
+		final boolean highlighting = hasHighlightingFilter(filters);
+		final List<Filter<T>> evaluationOrder = this.evaluationOrder;
+		final GroupMatches<T> groupMatches = new GroupMatches<>(evaluationOrder, true);
+		final FilterResult<T> result = IntStream.range(0, rowsToMatch.length).parallel().collect(FilterResult::new, (buffer, index) -> {
+			final Row<T> row = rowsToMatch[index];
+			final List<IHighlightingFilter> highlights = highlighting ? new ArrayList<>() : null;
+			final boolean matches = match(row, evaluationOrder, hideNoneHighlightedRows, BitmapAccess.READ_ONLY, groupMatches, highlighting ? highlights::add : filter -> {});
+			
+			if (highlighting && !highlights.isEmpty()) {
+				buffer.highlights.put(row, highlights);
+			}
+			
+			if ((index < visibleCount) && !matches) {
+				buffer.rowsToHide.add(row);
+				
+			} else if ((index >= visibleCount) && matches) {
+				buffer.rowsToShow.add(row);
+			}
+			
+		}, FilterResult::addAll);
+		
 		//
-		// Show/hide now (if we did it in the above loops we'd get concurrent modifications).
+		// Record the highlights, as match would have.
 		//
-		for (final Row<T> row : rowsToShow) {
-			if (logger.isTraceEnabled()) {
-				logger.trace(String.format("Showing %s->%s", gridModel.getContentProvider().getElementId(row.getElement()), row));
+		for (final Row<T> row : rowsToMatch) {
+			if (row.getFilterMatches() != null) {
+				row.getFilterMatches().clear();
 			}
 			
-			gridModel.showRow(row, false);
+			final List<IHighlightingFilter> highlights = result.highlights.get(row);
+			if (highlights != null) {
+				highlights.forEach(row::addFilterMatch);
+			}
 		}
 		
-		for (final Row<T> row : rowsToHide) {
-			if (logger.isTraceEnabled()) {
-				logger.trace(String.format("Hiding %s->%s", gridModel.getContentProvider().getElementId(row.getElement()), row));
-			}
-			
-			selectionChanged |= row.isSelected();
-			gridModel.hideRow(row, false);
+		return result;
+	}
+	
+	/**
+	 * Match a snapshot of the rows (and of their groups) on a pool thread, then show/hide the rows on the display thread.
+	 * Rows which are removed, or shown/hidden/updated by the display thread in the meantime are left alone - they've 
+	 * already been matched against these filters.
+	 */
+	private void applyFiltersInBackground(final BackgroundWorker<T> backgroundWorker, final boolean matchVisibleRows, final boolean matchHiddenRows) {
+		final List<Row<T>> snapshot = new ArrayList<>();
+		final List<Filter<T>> filters = evaluationOrder;
+		final boolean hideNoneHighlightedRows = this.hideNoneHighlightedRows;
+		final boolean highlighting = hasHighlightingFilter(filters);
+		
+		if (matchVisibleRows) {
+			snapshot.addAll(gridModel.getRows());
+		}
+		
+		final int visibleCount = snapshot.size();
+		
+		if (matchHiddenRows) {
+			snapshot.addAll(gridModel.getHiddenRows());
 		}
 		
 		//
-		// Index the rows now so we can remove things by index for performance - as removing large number of rows
-		// by object references results in much scanning of the list(s).
+		// The rows' groups can change on the display thread while they're matched - so they're copied here.
 		//
-		gridModel.reindex();
+		final GroupMatches<T> groupMatches = new GroupMatches<>(filters, false);
+		groupMatches.snapshotGroups(gridModel, snapshot);
+		
+		backgroundWorker.submit(filterGeneration, cancelled -> {
+			final FilterResult<T> result = new FilterResult<>();
+			
+			for (int index=0; index<snapshot.size(); index++) {
+				if (((index % 1024) == 0) && cancelled.getAsBoolean()) {
+					return null;
+				}
+				
+				final Row<T> row = snapshot.get(index);
+				
+				final List<IHighlightingFilter> highlights = highlighting ? new ArrayList<>() : null;
+				final boolean matches = match(row, filters, hideNoneHighlightedRows, BitmapAccess.NONE, groupMatches, highlighting ? highlights::add : filter -> {});
+				
+				if (highlighting) {
+					result.highlights.put(row, highlights);
+				}
+				
+				if ((index < visibleCount) && !matches) {
+					result.rowsToHide.add(row);
+					
+				} else if ((index >= visibleCount) && matches) {
+					result.rowsToShow.add(row);
+				}
+			}
+			
+			return result;
+			
+		}, result -> {
+			appliedGeneration = filterGeneration.get();
+			
+			final List<Row<T>> rowsToHide = new ArrayList<>();
+			final List<Row<T>> rowsToShow = new ArrayList<>();
+			
+			for (final Row<T> row : result.rowsToHide) {
+				if (isUntouched(backgroundWorker, row) && row.isVisible()) {
+					rowsToHide.add(row);
+				}
+			}
+			
+			for (final Row<T> row : result.rowsToShow) {
+				if (isUntouched(backgroundWorker, row) && !row.isVisible()) {
+					rowsToShow.add(row);
+				}
+			}
+			
+			for (final Map.Entry<Row<T>, List<IHighlightingFilter>> entry : result.highlights.entrySet()) {
+				final Row<T> row = entry.getKey();
+				
+				if (isUntouched(backgroundWorker, row)) {
+					if (row.getFilterMatches() != null) {
+						row.getFilterMatches().clear();
+					}
+					
+					entry.getValue().forEach(row::addFilterMatch);
+				}
+			}
+			
+			hideAndShowRows(rowsToHide, rowsToShow);
+		});
+	}
+	
+	/**
+	 * The row is still in the model and the display thread hasn't shown, hidden or updated it.
+	 */
+	private boolean isUntouched(final BackgroundWorker<T> backgroundWorker, final Row<T> row) {
+		return (gridModel.getRow(row.getElement()) == row) && !backgroundWorker.isTouched(row);
+	}
+	
+	private void hideAndShowRows(final List<Row<T>> rowsToHide, final List<Row<T>> rowsToShow) {
+		boolean selectionChanged = false;
 		
-		if (!rowsToShow.isEmpty()) {
-			for (int rowIndex=rowsToShow.size()-1; rowIndex>=0; rowIndex--) {
-				final Row<T> row = rowsToShow.get(rowIndex);
-				gridModel.getHiddenRows().remove(row.getHiddenRowIndex());
-				row.setHiddenRowIndex(-1);
+		//
+		// Show/hide now (if we did it in the above loops we'd get concurrent modifications). Both the visible and hidden
+		// rows can remove a row without scanning, so there's no need to index the rows first.
+		//
+		for (final Row<T> row : rowsToHide) {
+			if (logger.isTraceEnabled()) {
+				logger.trace(String.format("Hiding %s->%s", gridModel.getContentProvider().getElementId(row.getElement()), row));
 			}
+			
+			selectionChanged |= row.isSelected();
+			gridModel.hideRow(row);
 		}
 		
-		if (!rowsToHide.isEmpty()) {
-			for (int rowIndex=rowsToHide.size()-1; rowIndex>=0; rowIndex--) {
-				final Row<T> row = rowsToHide.get(rowIndex);
-				gridModel.getRows().remove(row.getRowIndex());
-				row.setRowIndex(-1);
+		for (final Row<T> row : rowsToShow) {
+			if (logger.isTraceEnabled()) {
+				logger.trace(String.format("Showing %s->%s", gridModel.getContentProvider().getElementId(row.getElement()), row));
 			}
+			
+			gridModel.showRow(row);
 		}
 		
 		//
@@ -236,5 +913,84 @@ public class FilterModel<T> {
 		gridModel.reindex();
 		gridModel.fireChangeEvent();
 	}
-
+	
+	/**
+	 * The rows a background filter found to need hiding or showing, and the highlighting filters each row matched (if 
+	 * there are any highlighting filters).
+	 */
+	private static class FilterResult<T> {
+		private final List<Row<T>> rowsToHide = new ArrayList<>();
+		private final List<Row<T>> rowsToShow = new ArrayList<>();
+		private final Map<Row<T>, List<IHighlightingFilter>> highlights = new IdentityHashMap<>();
+		
+		/**
+		 * Merge another (later) result into this one.
+		 */
+		private void addAll(final FilterResult<T> other) {
+			rowsToHide.addAll(other.rowsToHide);
+			rowsToShow.addAll(other.rowsToShow);
+			highlights.putAll(other.highlights);
+		}
+	}
+	
+	/**
+	 * Each filter's result for the whole groups matched in a pass, keyed by the group's parent element. The groups don't
+	 * change during a pass, so each group is only matched once however many rows it has - rather than once per row.
+	 * 
+	 * A pass away from the display thread also holds a snapshot of the groups - the group element and whole group of each
+	 * row in a group.
+	 */
+	private static class GroupMatches<T> {
+		private final Map<Filter<T>, Map<T, Boolean>> matches = new IdentityHashMap<>();
+		private Map<Row<T>, T> groupElements;
+		private Map<T, List<T>> wholeGroups;
+		
+		private GroupMatches(final Collection<Filter<T>> filters, final boolean concurrent) {
+			for (final Filter<T> filter : filters) {
+				matches.put(filter, concurrent ? new ConcurrentHashMap<>() : new HashMap<>());
+			}
+		}
+		
+		private Map<T, Boolean> get(final Filter<T> filter) {
+			return matches.get(filter);
+		}
+		
+		private boolean hasGroups() {
+			return (groupElements != null);
+		}
+		
+		/**
+		 * Copy the groups of the rows - must be called on the display thread.
+		 */
+		private void snapshotGroups(final GridModel<T> gridModel, final Collection<Row<T>> rows) {
+			groupElements = new IdentityHashMap<>();
+			wholeGroups = new HashMap<>();
+			
+			for (final Row<T> row : rows) {
+				if (gridModel.isGroupRow(row)) {
+					final T groupElement = gridModel.getParentOrOwnElement(row);
+					groupElements.put(row, groupElement);
+					
+					if (!wholeGroups.containsKey(groupElement)) {
+						wholeGroups.put(groupElement, gridModel.getWholeGroup(row.getElement()));
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * A filter's results, indexed by row ordinal. A row's matched bit is only meaningful if it's evaluated bit is set. The
+	 * filter's statistics are kept alongside.
+	 */
+	private static class FilterBitmap {
+		private final BitSet evaluated = new BitSet();
+		private final BitSet matched = new BitSet();
+		private final FilterStatistics statistics = new FilterStatistics();
+		
+		private void clear() {
+			evaluated.clear();
+			matched.clear();
+		}
+	}
 }
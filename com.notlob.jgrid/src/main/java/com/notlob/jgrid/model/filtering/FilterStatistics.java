@@ -0,0 +1,108 @@
+package com.notlob.jgrid.model.filtering;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * How often a filter has been evaluated, how long it took and how many of the rows it was matched against it hid. Only
+ * a sample of the evaluations are timed, so the times are estimates.
+ *
+ * The FilterModel uses these to evaluate the cheap, selective filters first - once a row is hidden by one filter, the
+ * rest (apart from any highlighting filters) needn't be evaluated. They can also be shown for diagnostics.
+ *
+ * The counters can be updated from several threads at once.
+ *
+ * @author Stef
+ */
+public class FilterStatistics {
+
+	// Calls to Filter.matches, and the number of those timed and the time they took.
+	private final LongAdder evaluations = new LongAdder();
+	private final LongAdder timedEvaluations = new LongAdder();
+	private final LongAdder timedNanos = new LongAdder();
+
+	// Rows the filter has been matched against (including those with a kept result) and how many it hid.
+	private final LongAdder results = new LongAdder();
+	private final LongAdder rejections = new LongAdder();
+
+	void recordEvaluations(final long count) {
+		if (count > 0) {
+			evaluations.add(count);
+		}
+	}
+
+	void recordTiming(final long nanos) {
+		timedEvaluations.increment();
+		timedNanos.add(nanos);
+	}
+
+	void recordResult(final boolean rejected) {
+		results.increment();
+
+		if (rejected) {
+			rejections.increment();
+		}
+	}
+
+	public long getEvaluationCount() {
+		return evaluations.sum();
+	}
+
+	/**
+	 * The estimated total time of all evaluations.
+	 */
+	public long getEvaluationNanos() {
+		return Math.round(getAverageEvaluationNanos() * evaluations.sum());
+	}
+
+	/**
+	 * The average time of the timed evaluations.
+	 */
+	public double getAverageEvaluationNanos() {
+		final long count = timedEvaluations.sum();
+		return (count == 0) ? 0 : ((double) timedNanos.sum() / count);
+	}
+
+	public long getResultCount() {
+		return results.sum();
+	}
+
+	public long getRejectionCount() {
+		return rejections.sum();
+	}
+
+	/**
+	 * The fraction of rows the filter hid.
+	 */
+	public double getRejectionRate() {
+		final long count = results.sum();
+		return (count == 0) ? 0 : ((double) rejections.sum() / count);
+	}
+
+	/**
+	 * The expected cost of evaluating the filter for each row it hides - so cheap filters which hide lots of rows rank
+	 * lowest. Filters which haven't been used yet rank first (so they're measured) and those which never hide a row rank
+	 * last.
+	 */
+	double getRank() {
+		if (results.sum() == 0) {
+			return 0;
+		}
+
+		final double rejectionRate = getRejectionRate();
+		return (rejectionRate == 0) ? Double.MAX_VALUE : (getAverageEvaluationNanos() / rejectionRate);
+	}
+
+	public void reset() {
+		evaluations.reset();
+		timedEvaluations.reset();
+		timedNanos.reset();
+		results.reset();
+		rejections.reset();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Evaluations [%s] Average [%.0fns] Results [%s] Rejections [%s] Rejection Rate [%.2f]",
+				getEvaluationCount(), getAverageEvaluationNanos(), getResultCount(), getRejectionCount(), getRejectionRate());
+	}
+}
@@ -0,0 +1,338 @@
+package com.notlob.jgrid.model.filtering;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import com.notlob.jgrid.model.Column;
+import com.notlob.jgrid.model.GridModel;
+import com.notlob.jgrid.model.Row;
+
+/**
+ * An optional index, per column, of the text the label provider shows for each element - so a text search can find the
+ * matching elements without testing every row. Searches are case-insensitive.
+ *
+ * Each indexed column keeps the distinct texts in order (for prefix searches) and the trigrams of each distinct text
+ * (for contains searches). A contains search intersects the texts of the search's trigrams, then checks only those
+ * candidates. Searches shorter than a trigram scan the distinct texts - usually far fewer than the rows.
+ *
+ * The GridModel keeps the index up-to-date as elements are added, updated and removed. The version is bumped whenever
+ * the text of an element changes, so searches can cache their results.
+ *
+ * NOTE: This is an internal class not to be manipulated by client code.
+ *
+ * @author Stef
+ */
+public class TextIndex<T> {
+
+	// The length of the grams indexed.
+	private final static int GRAM_LENGTH = 3;
+
+	private final GridModel<T> gridModel;
+
+	// The index of each indexed column.
+	private final Map<Column, ColumnIndex> indexes;
+
+	// Bumped whenever an element's indexed text changes.
+	private int version = 0;
+
+	/**
+	 * The text of one column.
+	 */
+	private class ColumnIndex {
+		// The (lower-case) text of each element.
+		private final Map<T, String> textByElement = new HashMap<>();
+
+		// The elements with each distinct text, in text order.
+		private final TreeMap<String, Set<T>> elementsByText = new TreeMap<>();
+
+		// The distinct texts containing each gram.
+		private final Map<String, Set<String>> textsByGram = new HashMap<>();
+
+		/**
+		 * Index the element's text, returning true if it's changed.
+		 */
+		private boolean put(final T element, final String text) {
+			final String previous = textByElement.put(element, text);
+
+			if (text.equals(previous)) {
+				return false;
+			}
+
+			if (previous != null) {
+				removeText(element, previous);
+			}
+
+			Set<T> elements = elementsByText.get(text);
+			if (elements == null) {
+				elements = new HashSet<>();
+				elementsByText.put(text, elements);
+
+				for (final String gram : getGrams(text)) {
+					Set<String> texts = textsByGram.get(gram);
+					if (texts == null) {
+						texts = new HashSet<>();
+						textsByGram.put(gram, texts);
+					}
+
+					texts.add(text);
+				}
+			}
+
+			elements.add(element);
+			return true;
+		}
+
+		private boolean remove(final T element) {
+			final String previous = textByElement.remove(element);
+
+			if (previous == null) {
+				return false;
+			}
+
+			removeText(element, previous);
+			return true;
+		}
+
+		/**
+		 * Remove the element from the text's elements - and the text from the grams if it was the last.
+		 */
+		private void removeText(final T element, final String text) {
+			final Set<T> elements = elementsByText.get(text);
+			elements.remove(element);
+
+			if (elements.isEmpty()) {
+				elementsByText.remove(text);
+
+				for (final String gram : getGrams(text)) {
+					final Set<String> texts = textsByGram.get(gram);
+					texts.remove(text);
+
+					if (texts.isEmpty()) {
+						textsByGram.remove(gram);
+					}
+				}
+			}
+		}
+
+		private void clear() {
+			textByElement.clear();
+			elementsByText.clear();
+			textsByGram.clear();
+		}
+
+		/**
+		 * The distinct texts which contain the search text.
+		 */
+		private Collection<String> getTextsContaining(final String searchText) {
+			final List<String> matchingTexts = new ArrayList<>();
+
+			if (searchText.length() < GRAM_LENGTH) {
+				for (final String text : elementsByText.keySet()) {
+					if (text.contains(searchText)) {
+						matchingTexts.add(text);
+					}
+				}
+
+				return matchingTexts;
+			}
+
+			//
+			// Start with the rarest gram, then narrow the candidates by each of the others.
+			//
+			final List<Set<String>> postings = new ArrayList<>();
+			for (final String gram : getGrams(searchText)) {
+				final Set<String> texts = textsByGram.get(gram);
+
+				if (texts == null) {
+					return matchingTexts;
+				}
+
+				postings.add(texts);
+			}
+
+			postings.sort((postings1, postings2) -> Integer.compare(postings1.size(), postings2.size()));
+
+			candidates:
+			for (final String text : postings.get(0)) {
+				for (int index=1; index<postings.size(); index++) {
+					if (!postings.get(index).contains(text)) {
+						continue candidates;
+					}
+				}
+
+				//
+				// Every gram is in the text - but not necessarily in sequence.
+				//
+				if (text.contains(searchText)) {
+					matchingTexts.add(text);
+				}
+			}
+
+			return matchingTexts;
+		}
+
+		/**
+		 * The distinct texts which start with the search text.
+		 */
+		private Collection<String> getTextsStartingWith(final String searchText) {
+			if (searchText.isEmpty()) {
+				return elementsByText.keySet();
+			}
+
+			return elementsByText.subMap(searchText, true, searchText + Character.MAX_VALUE, false).keySet();
+		}
+	}
+
+	public TextIndex(final GridModel<T> gridModel) {
+		this.gridModel = gridModel;
+		this.indexes = new IdentityHashMap<>();
+	}
+
+	/**
+	 * Start indexing the column - every element in the model is indexed now.
+	 */
+	public void addColumn(final Column column) {
+		if (indexes.containsKey(column)) {
+			return;
+		}
+
+		final ColumnIndex index = new ColumnIndex();
+		indexes.put(column, index);
+
+		for (final Row<T> row : gridModel.getAllRows()) {
+			index.put(row.getElement(), getLabelText(column, row.getElement()));
+		}
+
+		version++;
+	}
+
+	/**
+	 * Stop indexing the column - any search of it matches nothing from now on.
+	 */
+	public void removeColumn(final Column column) {
+		if (indexes.remove(column) != null) {
+			version++;
+		}
+	}
+
+	public boolean isIndexed(final Column column) {
+		return indexes.containsKey(column);
+	}
+
+	public Collection<Column> getColumns() {
+		return Collections.unmodifiableSet(indexes.keySet());
+	}
+
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * Index (or re-index) the element's text in each indexed column.
+	 */
+	public void put(final T element) {
+		for (final Map.Entry<Column, ColumnIndex> entry : indexes.entrySet()) {
+			if (entry.getValue().put(element, getLabelText(entry.getKey(), element))) {
+				version++;
+			}
+		}
+	}
+
+	public void remove(final T element) {
+		for (final ColumnIndex index : indexes.values()) {
+			if (index.remove(element)) {
+				version++;
+			}
+		}
+	}
+
+	/**
+	 * Remove every element - the columns stay indexed.
+	 */
+	public void clear() {
+		for (final ColumnIndex index : indexes.values()) {
+			index.clear();
+		}
+
+		version++;
+	}
+
+	/**
+	 * Re-index every element (i.e. the label provider has changed).
+	 */
+	public void rebuild() {
+		final List<Column> columns = new ArrayList<>(indexes.keySet());
+		indexes.clear();
+
+		for (final Column column : columns) {
+			addColumn(column);
+		}
+
+		version++;
+	}
+
+	/**
+	 * The elements whose text in the column contains the search text - none if the column isn't indexed.
+	 */
+	public Set<T> getElementsContaining(final Column column, final String searchText) {
+		final ColumnIndex index = indexes.get(column);
+		return (index == null) ? Collections.<T>emptySet() : getElements(index, index.getTextsContaining(normalise(searchText)));
+	}
+
+	/**
+	 * The elements whose text in the column starts with the search text - none if the column isn't indexed.
+	 */
+	public Set<T> getElementsStartingWith(final Column column, final String searchText) {
+		final ColumnIndex index = indexes.get(column);
+		return (index == null) ? Collections.<T>emptySet() : getElements(index, index.getTextsStartingWith(normalise(searchText)));
+	}
+
+	private Set<T> getElements(final ColumnIndex index, final Collection<String> texts) {
+		final Set<T> elements = new HashSet<>();
+
+		for (final String text : texts) {
+			elements.addAll(index.elementsByText.get(text));
+		}
+
+		return elements;
+	}
+
+	/**
+	 * The element's indexed (lower-case) text in the column - or null if the column or element isn't indexed.
+	 */
+	public String getText(final Column column, final T element) {
+		final ColumnIndex index = indexes.get(column);
+		return (index == null) ? null : index.textByElement.get(element);
+	}
+
+	private String getLabelText(final Column column, final T element) {
+		final String text = gridModel.getLabelProvider().getText(column, element);
+		return normalise((text == null) ? "" : text);
+	}
+
+	static String normalise(final String text) {
+		return text.toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * The distinct grams in the text.
+	 */
+	private static Set<String> getGrams(final String text) {
+		final Set<String> grams = new HashSet<>();
+
+		for (int index=0; index<=(text.length() - GRAM_LENGTH); index++) {
+			grams.add(text.substring(index, index + GRAM_LENGTH));
+		}
+
+		return grams;
+	}
+}
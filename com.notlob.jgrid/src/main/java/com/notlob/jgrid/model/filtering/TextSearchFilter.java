@@ -0,0 +1,153 @@
+package com.notlob.jgrid.model.filtering;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.notlob.jgrid.model.Column;
+
+/**
+ * Matches elements whose text (as shown by the label provider) in any of the columns contains, or starts with, the
+ * search text. Searches are case-insensitive.
+ *
+ * The columns must be indexed by the grid's TextIndex, so the matching elements are looked up rather than each row's
+ * text being tested. The matches are cached until the index changes - then, rather than looking every match up again
+ * as each row is added or updated, each element's own indexed text is checked until that's cost as much as looking the
+ * matches up again. Columns with a match are highlighted. A column which isn't (or stops being) indexed matches
+ * nothing.
+ *
+ * A filter's search can't be changed - replace it with a new filter (with setFilters) as the search text changes. A
+ * longer search is narrower than a shorter one it extends, so only the visible rows are re-matched.
+ *
+ * @author Stef
+ */
+public class TextSearchFilter<T> extends Filter<T> implements IHighlightingFilter {
+
+	public enum SearchType {
+		CONTAINS,
+		STARTS_WITH
+	}
+
+	private final TextIndex<T> textIndex;
+	private final List<Column> columns;
+	private final String searchText;
+	private final SearchType searchType;
+
+	// The matching elements and the columns they matched in, as of the index version.
+	private int matchesVersion = -1;
+	private Set<T> matchingElements;
+	private Set<Column> matchingColumns;
+
+	// Elements checked on their own text since the matches were last looked up - and the fewest allowed before they are
+	// looked up again.
+	private int staleLookups = 0;
+	private final static int MIN_STALE_LOOKUPS = 64;
+
+	public TextSearchFilter(final TextIndex<T> textIndex, final Collection<Column> columns, final String searchText, final SearchType searchType) {
+		this.textIndex = textIndex;
+		this.columns = new ArrayList<>(columns);
+		this.searchText = TextIndex.normalise(searchText);
+		this.searchType = searchType;
+	}
+
+	public String getSearchText() {
+		return searchText;
+	}
+
+	public SearchType getSearchType() {
+		return searchType;
+	}
+
+	@Override
+	public boolean matches(final T element) {
+		if (searchText.isEmpty()) {
+			return true;
+		}
+
+		if ((matchesVersion != textIndex.getVersion()) && (matchingElements != null) && (staleLookups < Math.max(matchingElements.size(), MIN_STALE_LOOKUPS))) {
+			staleLookups++;
+			return matchesText(element);
+		}
+
+		return getMatchingElements().contains(element);
+	}
+
+	/**
+	 * Check the element's own text in each column.
+	 */
+	private boolean matchesText(final T element) {
+		for (final Column column : columns) {
+			final String text = textIndex.getText(column, element);
+
+			if ((text != null) && ((searchType == SearchType.CONTAINS) ? text.contains(searchText) : text.startsWith(searchText))) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	@Override
+	public boolean isColumnHighlighted(final Column column) {
+		if (searchText.isEmpty()) {
+			return false;
+		}
+
+		getMatchingElements();
+		return matchingColumns.contains(column);
+	}
+
+	/**
+	 * Look the search up in the index if it's changed since the last time.
+	 */
+	private Set<T> getMatchingElements() {
+		if (matchesVersion != textIndex.getVersion()) {
+			matchingElements = new HashSet<>();
+			matchingColumns = new HashSet<>();
+
+			for (final Column column : columns) {
+				final Set<T> elements = (searchType == SearchType.CONTAINS) ? textIndex.getElementsContaining(column, searchText) : textIndex.getElementsStartingWith(column, searchText);
+
+				if (!elements.isEmpty()) {
+					matchingElements.addAll(elements);
+					matchingColumns.add(column);
+				}
+			}
+
+			matchesVersion = textIndex.getVersion();
+			staleLookups = 0;
+		}
+
+		return matchingElements;
+	}
+
+	/**
+	 * Narrower than a search of the same columns, if this search text contains (or starts with) the other's.
+	 */
+	@Override
+	public boolean isNarrowerThan(final Filter<T> other) {
+		if (!(other instanceof TextSearchFilter)) {
+			return false;
+		}
+
+		final TextSearchFilter<T> otherSearch = (TextSearchFilter<T>) other;
+
+		if ((otherSearch.textIndex != textIndex) || (otherSearch.searchType != searchType) || !otherSearch.columns.equals(columns) || (isShowWholeGroup() != other.isShowWholeGroup())) {
+			return false;
+		}
+
+		return (searchType == SearchType.CONTAINS) ? searchText.contains(otherSearch.searchText) : searchText.startsWith(otherSearch.searchText);
+	}
+
+	@Override
+	public String toReadableString(final boolean includeStyleTokens) {
+		final List<String> captions = new ArrayList<>();
+		for (final Column column : columns) {
+			captions.add(column.getCaption());
+		}
+
+		return String.format("Searching %s for '%s'", String.join(", ", captions), searchText);
+	}
+}
@@ -0,0 +1,26 @@
+package com.notlob.jgrid.providers;
+
+import java.util.List;
+
+import com.notlob.jgrid.model.Column;
+
+/**
+ * If set on the grid, the grid groups the elements itself by the values of the group-by columns - rather than the
+ * content provider's getParent/getChildren being used. A parent element is created for each distinct combination of
+ * values and the elements with those values become it's children.
+ *
+ * The label provider is asked for the text of the group elements as usual. The content provider is asked for their
+ * ids, and for any values other than the group-by values.
+ *
+ * @author stef
+ *
+ * @param <T>
+ */
+public interface IGroupElementProvider<T> {
+
+	/**
+	 * Create the parent element for a new group. The values are those of the group-by columns (in the same sequence).
+	 */
+	T createGroupElement(final List<Column> groupByColumns, final List<Object> values);
+
+}
@@ -547,11 +547,21 @@ public class CellRenderer<T> extends Renderer<T> {
 		} else if (row == gridModel.getColumnHeaderRow()) {
 			return column.getCaption();
 
+		} else if (row == gridModel.getFooterRow()) {
+			return getFooterText(column, gridModel.getFooterModel().getValue(column));
+
 		} else {
 			return grid.getLabelProvider().getText(column, row.getElement());
 		}
 	}
 	
+	/**
+	 * Format the aggregate shown in the column's footer cell. Override to format the values differently.
+	 */
+	protected String getFooterText(final Column column, final Object value) {
+		return (value == null) ? "" : value.toString();
+	}
+	
 	/**
 	 * Return the image for the given cell.
 	 */
@@ -576,7 +586,7 @@ public class CellRenderer<T> extends Renderer<T> {
 				}
 			}
 
-		} else if ((column == gridModel.getRowNumberColumn()) || (column == gridModel.getGroupSelectorColumn())) {
+		} else if ((column == gridModel.getRowNumberColumn()) || (column == gridModel.getGroupSelectorColumn()) || (row == gridModel.getFooterRow())) {
 			 // Do nothing, they don't have images.
 			 
 		} else {
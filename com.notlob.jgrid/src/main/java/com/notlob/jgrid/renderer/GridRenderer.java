@@ -536,7 +536,18 @@ public class GridRenderer<T> extends Renderer<T> implements PaintListener {
 			// Move the bounds down for the next row.
 			//
 			rowBounds.y += (rowBounds.height + styleRegistry.getCellSpacingVertical());
-		}		
+		}
+		
+		//
+		// Paint the footer row along the bottom of the grid.
+		//
+		if (gridModel.isShowFooter()) {
+			final Row<T> row = gridModel.getFooterRow();
+			rc.setAlternate(false);
+			rowBounds.height = grid.getRowHeight(row);
+			rowBounds.y = grid.getClientArea().y + grid.getClientArea().height - rowBounds.height - styleRegistry.getCellSpacingVertical();
+			rowRenderer.paintRow(rc, rowBounds, row);
+		}
 	}
 	
 	/**
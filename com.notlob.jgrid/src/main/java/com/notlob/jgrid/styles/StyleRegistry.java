@@ -20,6 +20,7 @@ public class StyleRegistry<T> {
 
 	protected CellStyle defaultStyle;
 	protected CellStyle headerStyle;
+	protected CellStyle footerStyle;
 	protected CellStyle rowNumberStyle;
 	protected CellStyle cornerStyle;
 	protected CellStyle groupNameStyle;
@@ -98,6 +99,13 @@ public class StyleRegistry<T> {
 		headerStyle.setBorderOuterRight(new BorderStyle(1, LineStyle.SOLID, new RGB(158, 182, 206)));
 		headerStyle.setBorderOuterLeft(new BorderStyle(1, LineStyle.SOLID, new RGB(158, 182, 206)));
 
+		//
+		// Build a style for the footer (aggregate) row.
+		//
+		footerStyle = headerStyle.copy();
+		footerStyle.setContentStyle(ContentStyle.TEXT);
+		footerStyle.setTextAlignment(AlignmentStyle.RIGHT_CENTER);
+
 		//
 		// Build a style for group (parent) rows.
 		//
@@ -230,6 +238,10 @@ public class StyleRegistry<T> {
 
 		styleCollector.clear();
 		
+		if (row == grid.getGridModel().getFooterRow()) {
+			return footerStyle;
+		}
+		
 		if (column != null) {
 			//
 			// See if there's a custom style first.
@@ -262,7 +274,7 @@ public class StyleRegistry<T> {
 			}
 		}
 
-		final boolean parentRow = grid.getGridModel().isParentElement(row.getElement());
+		final boolean parentRow = grid.getGridModel().isParentRow(row);
 
 		//
 		// Check for a selected row.
@@ -298,6 +310,14 @@ public class StyleRegistry<T> {
 		this.headerStyle = headerStyle;
 	}
 
+	public CellStyle getFooterStyle() {
+		return footerStyle;
+	}
+	
+	public void setFooterStyle(CellStyle footerStyle) {
+		this.footerStyle = footerStyle;
+	}
+
 	public CellStyle getDefaultStyle() {
 		return defaultStyle;
 	}
@@ -0,0 +1,121 @@
+package com.notlob.jgrid.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * @author Stef
+ */
+public class AccumulatorTest {
+
+	@Test
+	public void minAndMaxFollowRandomChanges() {
+		final Accumulator min = new Accumulator(AggregateType.MIN, Comparator.naturalOrder());
+		final Accumulator max = new Accumulator(AggregateType.MAX, Comparator.naturalOrder());
+		final List<Integer> values = new ArrayList<>();
+		final Random random = new Random(3);
+
+		for (int change=0; change<20000; change++) {
+			//
+			// Mostly remove values from the middle of the heap, so they're removed lazily and the heap is compacted.
+			//
+			if (values.isEmpty() || (random.nextInt(5) < 2)) {
+				final Integer value = random.nextInt(500);
+				values.add(value);
+				min.add(value);
+				max.add(value);
+
+			} else {
+				final Integer value = values.remove(random.nextInt(values.size()));
+				min.remove(value);
+				max.remove(value);
+			}
+
+			if (values.isEmpty()) {
+				assertNull(min.getResult());
+				assertNull(max.getResult());
+
+			} else {
+				assertEquals(Collections.min(values), min.getResult());
+				assertEquals(Collections.max(values), max.getResult());
+			}
+		}
+	}
+
+	@Test
+	public void readdingRemovedValueCancelsRemoval() {
+		final Accumulator min = new Accumulator(AggregateType.MIN, Comparator.naturalOrder());
+		min.add(1);
+		min.add(5);
+		min.remove(5);
+		min.add(5);
+		min.remove(1);
+
+		assertEquals(5, min.getResult());
+
+		min.remove(5);
+		assertNull(min.getResult());
+	}
+
+	@Test
+	public void wholeNumberSumStaysWhole() {
+		final Accumulator sum = new Accumulator(AggregateType.SUM, null);
+		sum.add(2);
+		sum.add(3L);
+		sum.add(null);
+
+		assertEquals(5L, sum.getResult());
+	}
+
+	@Test
+	public void doubleSumResetsWhenEmpty() {
+		final Accumulator sum = new Accumulator(AggregateType.SUM, null);
+		sum.add(5);
+
+		for (int value=0; value<100000; value++) {
+			sum.add(0.1);
+		}
+
+		for (int value=0; value<100000; value++) {
+			sum.remove(0.1);
+		}
+
+		assertEquals(5L, sum.getResult());
+
+		sum.add(0.5);
+		assertEquals(5.5, sum.getResult());
+	}
+
+	@Test
+	public void doubleSumIsCompensated() {
+		final Accumulator sum = new Accumulator(AggregateType.SUM, null);
+		sum.add(1e16);
+		sum.add(1.0);
+		sum.add(1.0);
+		sum.remove(1e16);
+
+		assertEquals(2.0, (Double) sum.getResult(), 0.0);
+	}
+
+	@Test
+	public void averageAndCount() {
+		final Accumulator average = new Accumulator(AggregateType.AVERAGE, null);
+		final Accumulator count = new Accumulator(AggregateType.COUNT, null);
+
+		for (final Object value : new Object[] { 1, 2.5, 4, null }) {
+			average.add(value);
+			count.add(value);
+		}
+
+		assertEquals(2.5, (Double) average.getResult(), 0.0);
+		assertEquals(3, count.getResult());
+	}
+}
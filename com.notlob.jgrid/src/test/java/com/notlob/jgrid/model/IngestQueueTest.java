@@ -0,0 +1,76 @@
+package com.notlob.jgrid.model;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * @author Stef
+ */
+public class IngestQueueTest {
+
+	private int drainsRequired = 0;
+	private final IngestQueue<String> queue = new IngestQueue<>(() -> drainsRequired++);
+
+	@Test
+	public void updatesConflate() {
+		queue.submitUpdates(asList("a", "b"));
+		queue.submitUpdates(asList("a", "a"));
+
+		final IngestQueue.Batch<String> batch = queue.drain();
+		assertEquals(asList("a", "b"), batch.getUpdates());
+		assertTrue(batch.getAdds().isEmpty());
+		assertTrue(batch.getRemoves().isEmpty());
+		assertEquals(4, queue.getSubmittedCount());
+		assertEquals(2, queue.getConflatedCount());
+	}
+
+	@Test
+	public void addThenUpdateIsAdd() {
+		queue.submitAdds(singletonList("a"));
+		queue.submitUpdates(singletonList("a"));
+
+		final IngestQueue.Batch<String> batch = queue.drain();
+		assertEquals(singletonList("a"), batch.getAdds());
+		assertTrue(batch.getUpdates().isEmpty());
+	}
+
+	@Test
+	public void addThenRemoveCancels() {
+		queue.submitAdds(singletonList("a"));
+		queue.submitUpdates(singletonList("a"));
+		queue.submitRemoves(singletonList("a"));
+
+		assertEquals(0, queue.getDepth());
+		assertTrue(queue.drain().isEmpty());
+	}
+
+	@Test
+	public void removeThenAddReplaces() {
+		queue.submitUpdates(singletonList("a"));
+		queue.submitRemoves(singletonList("a"));
+		queue.submitAdds(singletonList("a"));
+
+		final IngestQueue.Batch<String> batch = queue.drain();
+		assertEquals(singletonList("a"), batch.getRemoves());
+		assertEquals(singletonList("a"), batch.getAdds());
+		assertTrue(batch.getUpdates().isEmpty());
+	}
+
+	@Test
+	public void drainRequiredOncePerBatch() {
+		queue.submitUpdates(singletonList("a"));
+		queue.submitUpdates(singletonList("b"));
+		assertEquals(1, drainsRequired);
+
+		queue.drain();
+		assertEquals(0, queue.getDepth());
+		assertEquals(1, queue.getDrainCount());
+
+		queue.submitAdds(singletonList("c"));
+		assertEquals(2, drainsRequired);
+	}
+}
@@ -0,0 +1,100 @@
+package com.notlob.jgrid.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks the RowList against an ArrayList of the same rows after many random changes.
+ *
+ * @author Stef
+ */
+public class RowListTest {
+
+	// Each row's height comes from it's element.
+	private final RowList<Integer> rows = new RowList<>(row -> (row.getElement() % 7) + 1);
+	private final List<Row<Integer>> expected = new ArrayList<>();
+	private final Random random = new Random(42);
+
+	@Test
+	public void randomInsertsAndRemoves() {
+		for (int change=0; change<20000; change++) {
+			if (expected.isEmpty() || (random.nextInt(3) != 0)) {
+				final Row<Integer> row = new Row<>(change);
+				final int index = random.nextInt(expected.size() + 1);
+				rows.add(index, row);
+				expected.add(index, row);
+
+			} else {
+				final int index = random.nextInt(expected.size());
+				final Row<Integer> removed = rows.remove(index);
+				assertSame(expected.remove(index), removed);
+				assertEquals(-1, removed.getRowIndex());
+			}
+
+			if ((change % 1000) == 0) {
+				assertMatches();
+			}
+		}
+
+		assertMatches();
+	}
+
+	@Test
+	public void removeByRow() {
+		for (int element=0; element<1000; element++) {
+			final Row<Integer> row = new Row<>(element);
+			rows.add(row);
+			expected.add(row);
+		}
+
+		for (int removal=0; removal<500; removal++) {
+			final Row<Integer> row = expected.remove(random.nextInt(expected.size()));
+			rows.remove(row);
+		}
+
+		assertMatches();
+	}
+
+	@Test
+	public void setRowsAndSort() {
+		final Row<Integer>[] array = RowList.newRowArray(5000);
+		for (int index=0; index<array.length; index++) {
+			array[index] = new Row<>(random.nextInt(100000));
+			expected.add(array[index]);
+		}
+
+		rows.setRows(array, array.length);
+		assertMatches();
+
+		final Comparator<Row<Integer>> comparator = Comparator.comparing(Row::getElement);
+		rows.sort(comparator);
+		expected.sort(comparator);
+		assertMatches();
+	}
+
+	/**
+	 * The same rows in the same positions, with each row's index and offset where they should be.
+	 */
+	private void assertMatches() {
+		assertEquals(expected.size(), rows.size());
+
+		int offset = 0;
+		for (int index=0; index<expected.size(); index++) {
+			final Row<Integer> row = expected.get(index);
+			assertSame(row, rows.get(index));
+			assertEquals(index, row.getRowIndex());
+			assertEquals(index, rows.indexOf(row));
+			assertEquals(offset + index, rows.getOffset(index, 1));
+			offset += (row.getElement() % 7) + 1;
+		}
+
+		assertEquals(offset, rows.getTotalHeight());
+	}
+}
@@ -0,0 +1,165 @@
+package com.notlob.jgrid.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * @author Stef
+ */
+public class RowRangesTest {
+
+	private final RowRanges ranges = new RowRanges();
+
+	@Test
+	public void addMergesTouchingRanges() {
+		ranges.add(10, 19);
+		ranges.add(30, 39);
+		ranges.add(20, 29);
+
+		assertEquals(1, ranges.getRangeCount());
+		assertEquals(10, ranges.getFrom(0));
+		assertEquals(39, ranges.getTo(0));
+		assertEquals(30, ranges.count());
+	}
+
+	@Test
+	public void removeSplitsRange() {
+		ranges.add(0, 99);
+		ranges.remove(40, 59);
+
+		assertEquals(2, ranges.getRangeCount());
+		assertEquals(39, ranges.getTo(0));
+		assertEquals(60, ranges.getFrom(1));
+		assertEquals(80, ranges.count());
+	}
+
+	@Test
+	public void insertShiftsLaterRanges() {
+		ranges.add(10, 19);
+		ranges.add(30, 39);
+		ranges.insert(25);
+
+		assertRange(0, 10, 19);
+		assertRange(1, 31, 40);
+		assertFalse(ranges.contains(25));
+	}
+
+	@Test
+	public void insertSplitsRange() {
+		ranges.add(10, 19);
+		ranges.insert(15);
+
+		assertRange(0, 10, 14);
+		assertRange(1, 16, 20);
+		assertFalse(ranges.contains(15));
+		assertEquals(10, ranges.count());
+	}
+
+	@Test
+	public void insertAtStartOfRangeShiftsIt() {
+		ranges.add(10, 19);
+		ranges.insert(10);
+
+		assertRange(0, 11, 20);
+	}
+
+	@Test
+	public void deleteShiftsLaterRanges() {
+		ranges.add(10, 19);
+		ranges.add(30, 39);
+		ranges.delete(25);
+
+		assertRange(0, 10, 19);
+		assertRange(1, 29, 38);
+	}
+
+	@Test
+	public void deleteClosesGap() {
+		ranges.add(10, 19);
+		ranges.add(21, 29);
+		ranges.delete(20);
+
+		assertEquals(1, ranges.getRangeCount());
+		assertRange(0, 10, 28);
+		assertEquals(19, ranges.count());
+	}
+
+	@Test
+	public void deleteInsideRange() {
+		ranges.add(10, 19);
+		ranges.delete(15);
+
+		assertRange(0, 10, 18);
+		assertEquals(9, ranges.count());
+	}
+
+	@Test
+	public void randomChangesMatchList() {
+		final Random random = new Random(7);
+		final List<Boolean> expected = new ArrayList<>();
+
+		for (int position=0; position<200; position++) {
+			expected.add(false);
+		}
+
+		for (int change=0; change<5000; change++) {
+			switch (random.nextInt(4)) {
+				case 0:
+					final int from = random.nextInt(expected.size());
+					final int to = Math.min(expected.size() - 1, from + random.nextInt(10));
+					ranges.add(from, to);
+					setAll(expected, from, to, true);
+					break;
+
+				case 1:
+					final int removeFrom = random.nextInt(expected.size());
+					final int removeTo = Math.min(expected.size() - 1, removeFrom + random.nextInt(10));
+					ranges.remove(removeFrom, removeTo);
+					setAll(expected, removeFrom, removeTo, false);
+					break;
+
+				case 2:
+					final int insert = random.nextInt(expected.size() + 1);
+					ranges.insert(insert);
+					expected.add(insert, false);
+					break;
+
+				default:
+					final int delete = random.nextInt(expected.size());
+					ranges.delete(delete);
+					expected.remove(delete);
+					break;
+			}
+
+			int count = 0;
+			for (int position=0; position<expected.size(); position++) {
+				assertEquals(expected.get(position), ranges.contains(position));
+				count += expected.get(position) ? 1 : 0;
+			}
+
+			assertEquals(count, ranges.count());
+
+			for (int range=1; range<ranges.getRangeCount(); range++) {
+				assertTrue("Ranges should be merged", ranges.getFrom(range) > ranges.getTo(range - 1) + 1);
+			}
+		}
+	}
+
+	private void assertRange(final int range, final int from, final int to) {
+		assertEquals(from, ranges.getFrom(range));
+		assertEquals(to, ranges.getTo(range));
+	}
+
+	private static void setAll(final List<Boolean> list, final int from, final int to, final boolean value) {
+		for (int position=from; position<=to; position++) {
+			list.set(position, value);
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package com.notlob.jgrid.model;
+
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+/**
+ * @author Stef
+ */
+public class SelectionChangeTest {
+
+	// Each element is it's own position.
+	private final SelectionChange<Integer> change = new SelectionChange<>(element -> element);
+
+	@Test
+	public void selectThenUnselectCancels() {
+		change.select(1);
+		change.unselect(1);
+
+		assertTrue(change.isEmpty());
+	}
+
+	@Test
+	public void rangeOverridesEarlierUnselect() {
+		change.unselect(5);
+		change.unselect(50);
+		change.selectRange(new SelectionChange.Range<>(0, 9, 0, 9));
+
+		assertEquals(singletonList(50), new ArrayList<>(change.getUnselected()));
+		assertEquals(1, change.getSelectedRanges().size());
+	}
+
+	@Test
+	public void selectAllDiscardsEarlierChanges() {
+		change.select(1);
+		change.unselect(2);
+		change.selectRange(new SelectionChange.Range<>(10, 19, 10, 19));
+		change.selectAll();
+
+		assertTrue(change.isAllSelected());
+		assertTrue(change.getSelected().isEmpty());
+		assertTrue(change.getUnselected().isEmpty());
+		assertTrue(change.getSelectedRanges().isEmpty());
+	}
+
+	@Test
+	public void mergeFollowsClear() {
+		final SelectionChange<Integer> next = new SelectionChange<>(element -> element);
+		next.clear();
+		next.select(3);
+
+		change.select(1);
+		change.merge(next);
+
+		assertTrue(change.isCleared());
+		assertFalse(change.getSelected().contains(1));
+		assertTrue(change.getSelected().contains(3));
+	}
+}